@@ -1,11 +1,19 @@
-plugins { id("java") }
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.2"
+}
 
 group = "org.example"
 version = "0.1.0"
 
 repositories { mavenCentral() }
 
-dependencies { compileOnly("net.portswigger.burp.extensions:montoya-api:2025.6") }
+dependencies {
+    compileOnly("net.portswigger.burp.extensions:montoya-api:2025.6")
+
+    // Benchmarks run outside Burp, so they need the API classes at runtime
+    jmh("net.portswigger.burp.extensions:montoya-api:2025.6")
+}
 
 tasks.withType<JavaCompile> {
     sourceCompatibility = "21"
@@ -18,3 +26,35 @@ tasks.jar {
     from(configurations.runtimeClasspath.get().filter { it.isDirectory })
     from(configurations.runtimeClasspath.get().filterNot { it.isDirectory }.map { zipTree(it) })
 }
+
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// Replays a HAR capture through the handlers: ./gradlew replay -Phar=capture.har [-Pthreads=8] [-Prules=rules.json]
+tasks.register<JavaExec>("replay") {
+    group = "verification"
+    description = "Replays a HAR file through the Crayon handlers and reports throughput and latency"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("ReplayHarness")
+    maxHeapSize = "512m"
+    args = buildList {
+        project.findProperty("har")?.let { add(it.toString()) }
+        project.findProperty("threads")?.let { addAll(listOf("--threads", it.toString())) }
+        project.findProperty("rules")?.let { addAll(listOf("--rules", it.toString())) }
+    }
+}
+
+// Classifies a HAR capture offline: ./gradlew classify --args="--format csv --output out.csv capture.har"
+tasks.register<JavaExec>("classify") {
+    group = "application"
+    description = "Classifies a HAR file with the Crayon rules and writes an annotated HAR or CSV"
+    classpath = sourceSets["main"].runtimeClasspath + configurations.compileClasspath.get()
+    mainClass.set("CrayonCli")
+    maxHeapSize = "512m"
+    standardInput = System.`in`
+}
@@ -0,0 +1,35 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import burp.api.montoya.core.HighlightColor;
+
+/**
+ * Throughput of the Montoya-independent decision procedure over a realistic traffic mix
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassifierBenchmark {
+    private ColorRules rules;
+    private ResponseFeatures[] features;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rules = ColorRules.compile(Stubs.defaultSettings(), Stubs.montoyaApi().logging());
+        features = TrafficMix.features(rules);
+    }
+
+    @Benchmark
+    public HighlightColor classify() {
+        ResponseFeatures input = features[next++ & (TrafficMix.SIZE - 1)];
+        return ResponseClassifier.classify(rules, input);
+    }
+}
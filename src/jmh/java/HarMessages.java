@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.ToolSource;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.proxy.websocket.InterceptedBinaryMessage;
+import burp.api.montoya.proxy.websocket.InterceptedTextMessage;
+import burp.api.montoya.websocket.Direction;
+
+/**
+ * Stub Montoya messages built from HAR entries, as seen by the handlers in the Proxy.
+ * Everything the handlers may read (notably the decoded body) is prepared up front, so
+ * handler timings do not include HAR decoding.
+ */
+final class HarMessages {
+
+    private HarMessages() {
+    }
+
+    static HttpResponseReceived response(HarEntry entry) {
+        HttpRequest request = new StubRequest(entry.method(), entry.url(), entry::requestHeader);
+        return new StubResponse(request, (short) entry.status(), entry::responseHeader,
+                inferredMimeType(entry.responseMimeType()), bytes(entry.responseBody()), toolSource(ToolType.PROXY));
+    }
+
+    static InterceptedTextMessage textMessage(HarEntry.WebSocketMessage message) {
+        Direction direction = direction(message);
+        Annotations annotations = Stubs.annotations();
+        return Stubs.proxy(InterceptedTextMessage.class, (p, m, args) -> switch (m.getName()) {
+            case "payload" -> message.data();
+            case "direction" -> direction;
+            case "annotations" -> annotations;
+            default -> Stubs.unsupported(m);
+        });
+    }
+
+    static InterceptedBinaryMessage binaryMessage(HarEntry.WebSocketMessage message) {
+        Direction direction = direction(message);
+        ByteArray payload = bytes(message.binaryData());
+        Annotations annotations = Stubs.annotations();
+        return Stubs.proxy(InterceptedBinaryMessage.class, (p, m, args) -> switch (m.getName()) {
+            case "payload" -> payload;
+            case "direction" -> direction;
+            case "annotations" -> annotations;
+            default -> Stubs.unsupported(m);
+        });
+    }
+
+    static ByteArray bytes(byte[] data) {
+        return Stubs.proxy(ByteArray.class, (p, m, args) -> switch (m.getName()) {
+            case "getByte" -> data[(Integer) args[0]];
+            case "length" -> data.length;
+            case "getBytes" -> data.clone();
+            case "subArray" -> bytes(Arrays.copyOfRange(data, (Integer) args[0], (Integer) args[1]));
+            default -> Stubs.unsupported(m);
+        });
+    }
+
+    static ToolSource toolSource(ToolType toolType) {
+        return new StubToolSource(toolType);
+    }
+
+    /**
+     * Approximation of Burp's MIME sniffing from the browser-recorded MIME type
+     */
+    static MimeType inferredMimeType(String mimeType) {
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        if (type.contains("json")) {
+            return MimeType.JSON;
+        } else if (type.contains("html")) {
+            return MimeType.HTML;
+        } else if (type.contains("xml")) {
+            return MimeType.XML;
+        } else if (type.contains("javascript") || type.contains("ecmascript")) {
+            return MimeType.SCRIPT;
+        } else if (type.startsWith("text/css")) {
+            return MimeType.CSS;
+        } else if (type.startsWith("text/")) {
+            return MimeType.PLAIN_TEXT;
+        } else if (type.startsWith("image/")) {
+            return MimeType.IMAGE_UNKNOWN;
+        }
+        return type.isEmpty() ? MimeType.NONE : MimeType.UNRECOGNIZED;
+    }
+
+    private static Direction direction(HarEntry.WebSocketMessage message) {
+        return message.outgoing() ? Direction.CLIENT_TO_SERVER : Direction.SERVER_TO_CLIENT;
+    }
+}
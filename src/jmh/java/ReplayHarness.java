@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.proxy.websocket.ProxyMessageHandler;
+import burp.api.montoya.proxy.websocket.ProxyWebSocket;
+import burp.api.montoya.proxy.websocket.ProxyWebSocketCreation;
+
+/**
+ * Replays a HAR capture through the real {@link RequestColorizer} and {@link ProxyWebSocketColorizer}
+ * from several threads, then reports throughput, handler latency percentiles and the colors applied.
+ * The archive is streamed through a small bounded queue, so captures of any size can be replayed.
+ *
+ * <pre>
+ * ./gradlew replay -Phar=capture.har [-Pthreads=8] [-Prules=rules.json]
+ * </pre>
+ */
+public final class ReplayHarness {
+    private static final int QUEUE_PER_THREAD = 64;
+    private static final HarEntry END = new HarEntry(Map.of());
+
+    private final RequestColorizer httpColorizer;
+    private final ProxyWebSocketColorizer webSocketColorizer;
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private ReplayHarness(RequestColorizer httpColorizer, ProxyWebSocketColorizer webSocketColorizer) {
+        this.httpColorizer = httpColorizer;
+        this.webSocketColorizer = webSocketColorizer;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path har = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String rulesFile = "";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--rules" -> rulesFile = args[++i];
+                default -> har = Path.of(args[i]);
+            }
+        }
+        if (har == null) {
+            System.err.println("Usage: ReplayHarness <capture.har> [--threads N] [--rules rules.json]");
+            System.exit(2);
+        }
+
+        Map<String, Object> values = Stubs.defaultValues();
+        values.put(Extension.RULES_FILE_SETTING, rulesFile);
+
+        Logging logging = Stubs.proxy(Logging.class, (p, method, arguments) -> {
+            if (method.getName().equals("logToError")) {
+                System.err.println(arguments[0]);
+            }
+            return null;
+        });
+        ColorRulesProvider rules = new ColorRulesProvider(Stubs.settings(values), logging);
+        CrayonLog log = new CrayonLog(logging, rules);
+        CrayonMetrics metrics = new CrayonMetrics();
+        ScopeCache scope = Stubs.scope();
+        RequestColorizer http = new RequestColorizer(rules, log, metrics, new AnomalyDetector(),
+                new FirstSeenEndpoints(rules, null, log), new IntruderOutliers(), scope);
+        ReplayHarness harness = new ReplayHarness(http, new ProxyWebSocketColorizer(rules, log, metrics, scope));
+        try {
+            long elapsedNanos = harness.replay(har, threads);
+            report(harness, metrics, threads, elapsedNanos);
+        } finally {
+            http.close();
+            log.close();
+            rules.close();
+        }
+    }
+
+    private long replay(Path har, int threads) throws IOException, InterruptedException {
+        BlockingQueue<HarEntry> queue = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> work(queue), "replay worker " + (i + 1));
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        try (Reader reader = Files.newBufferedReader(har, StandardCharsets.UTF_8);
+             HarReader entries = new HarReader(reader)) {
+            HarEntry entry;
+            while ((entry = entries.next()) != null) {
+                queue.put(entry);
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                queue.put(END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void work(BlockingQueue<HarEntry> queue) {
+        try {
+            HarEntry entry;
+            while ((entry = queue.take()) != END) {
+                try {
+                    replay(entry);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replay(HarEntry entry) {
+        entries.increment();
+        if (entry.status() > 0) {
+            httpColorizer.handleHttpResponseReceived(HarMessages.response(entry));
+        }
+        if (entry.webSocketMessages().isEmpty()) {
+            return;
+        }
+
+        // Each entry with frames is one socket: capture the handler Crayon registers for it
+        ProxyMessageHandler[] handler = new ProxyMessageHandler[1];
+        ProxyWebSocket socket = Stubs.proxy(ProxyWebSocket.class, (p, m, args) -> {
+            handler[0] = (ProxyMessageHandler) args[0];
+            return null;
+        });
+        HttpRequest upgrade = Stubs.request("GET", entry.url());
+        webSocketColorizer.handleWebSocketCreation(Stubs.proxy(ProxyWebSocketCreation.class,
+                (p, m, args) -> m.getName().equals("proxyWebSocket") ? socket : upgrade));
+        for (HarEntry.WebSocketMessage message : entry.webSocketMessages()) {
+            frames.increment();
+            if (message.binary()) {
+                if (message.outgoing()) {
+                    handler[0].handleBinaryMessageToBeSent(HarMessages.binaryMessage(message));
+                } else {
+                    handler[0].handleBinaryMessageReceived(HarMessages.binaryMessage(message));
+                }
+            } else if (message.outgoing()) {
+                handler[0].handleTextMessageToBeSent(HarMessages.textMessage(message));
+            } else {
+                handler[0].handleTextMessageReceived(HarMessages.textMessage(message));
+            }
+        }
+    }
+
+    private static void report(ReplayHarness harness, CrayonMetrics metrics, int threads, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long entries = harness.entries.sum();
+        System.out.printf("Replayed %d entries and %d WebSocket frames on %d thread(s) in %.2f s (%.0f entries/s)%n",
+                entries, harness.frames.sum(), threads, seconds, entries / seconds);
+        if (harness.failures.sum() > 0) {
+            System.out.printf("%d entries failed%n", harness.failures.sum());
+        }
+        for (CrayonMetrics.Handler handler : new CrayonMetrics.Handler[]{
+                CrayonMetrics.Handler.HTTP, CrayonMetrics.Handler.PROXY_WEBSOCKET}) {
+            CrayonMetrics.HandlerMetrics handlerMetrics = metrics.handler(handler);
+            long[] counts = handlerMetrics.latency().counts();
+            long count = LatencyHistogram.count(counts);
+            if (count == 0) {
+                continue;
+            }
+            long max = handlerMetrics.latency().maxNanos();
+            System.out.printf("%n%s: %d, %.0f/s%n", handler.label(), count, count / seconds);
+            System.out.printf("  latency p50 %d ns, p90 %d ns, p99 %d ns, p99.9 %d ns, max %d ns%n",
+                    Math.min(max, LatencyHistogram.percentile(counts, 50)),
+                    Math.min(max, LatencyHistogram.percentile(counts, 90)),
+                    Math.min(max, LatencyHistogram.percentile(counts, 99)),
+                    Math.min(max, LatencyHistogram.percentile(counts, 99.9)),
+                    max);
+            for (HighlightColor color : HighlightColor.values()) {
+                long colored = handlerMetrics.colorCount(color);
+                if (colored > 0) {
+                    System.out.printf("  %-8s %8d (%.1f%%)%n", color.name(), colored, 100.0 * colored / count);
+                }
+            }
+            System.out.printf("  %-8s %8d (%.1f%%)%n", "(none)", handlerMetrics.uncolored(),
+                    100.0 * handlerMetrics.uncolored() / count);
+        }
+        Map<String, Long> ruleHits = metrics.ruleHits();
+        if (!ruleHits.isEmpty()) {
+            System.out.printf("%nRule hits:%n");
+            ruleHits.forEach((rule, hits) -> System.out.printf("  %8d  %s%n", hits, rule));
+        }
+    }
+}
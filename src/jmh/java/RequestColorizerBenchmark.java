@@ -0,0 +1,60 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.handler.ResponseReceivedAction;
+
+/**
+ * End-to-end cost of {@link RequestColorizer#handleHttpResponseReceived} on stub messages.
+ * Run with the GC profiler (enabled in build.gradle.kts) to see the allocation rate per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestColorizerBenchmark {
+    private ColorRulesProvider rules;
+    private CrayonLog log;
+    private RequestColorizer colorizer;
+    private HttpResponseReceived[] responses;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        MontoyaApi api = Stubs.montoyaApi();
+        rules = new ColorRulesProvider(Stubs.defaultSettings(), api.logging());
+        log = new CrayonLog(api.logging(), rules);
+        colorizer = new RequestColorizer(rules, log, new CrayonMetrics(), new AnomalyDetector(),
+                new FirstSeenEndpoints(rules, null, log), new IntruderOutliers(), Stubs.scope());
+        responses = TrafficMix.responses();
+        // The settings never change during a run, so keep the current snapshot and stop polling the panel
+        rules.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        colorizer.close();
+        log.close();
+    }
+
+    @Benchmark
+    public ResponseReceivedAction handleResponse() {
+        return colorizer.handleHttpResponseReceived(responses[next++ & (TrafficMix.SIZE - 1)]);
+    }
+
+    /**
+     * Cost of reaching into a stub message, to subtract from {@link #handleResponse}
+     */
+    @Benchmark
+    public short stubBaseline() {
+        return responses[next++ & (TrafficMix.SIZE - 1)].statusCode();
+    }
+}
@@ -0,0 +1,56 @@
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.HighlightColor;
+
+/**
+ * Mutable annotations, like the ones Burp attaches to a message
+ */
+final class StubAnnotations implements Annotations {
+    private String notes;
+    private HighlightColor highlightColor = HighlightColor.NONE;
+
+    @Override
+    public String notes() {
+        return notes;
+    }
+
+    @Override
+    public boolean hasNotes() {
+        return notes != null && !notes.isEmpty();
+    }
+
+    @Override
+    public boolean hasHighlightColor() {
+        return highlightColor != HighlightColor.NONE;
+    }
+
+    @Override
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    @Override
+    public HighlightColor highlightColor() {
+        return highlightColor;
+    }
+
+    @Override
+    public void setHighlightColor(HighlightColor highlightColor) {
+        this.highlightColor = highlightColor;
+    }
+
+    @Override
+    public Annotations withNotes(String notes) {
+        StubAnnotations copy = new StubAnnotations();
+        copy.notes = notes;
+        copy.highlightColor = highlightColor;
+        return copy;
+    }
+
+    @Override
+    public Annotations withHighlightColor(HighlightColor highlightColor) {
+        StubAnnotations copy = new StubAnnotations();
+        copy.notes = notes;
+        copy.highlightColor = highlightColor;
+        return copy;
+    }
+}
@@ -0,0 +1,292 @@
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.Marker;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.ContentType;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.params.HttpParameter;
+import burp.api.montoya.http.message.params.HttpParameterType;
+import burp.api.montoya.http.message.params.ParsedHttpParameter;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.requests.HttpTransformation;
+
+/**
+ * A request with a method, URL and header lookup. A plain class rather than a dynamic proxy,
+ * so calls from the handlers cost no more than they would on Burp's own objects.
+ */
+final class StubRequest implements HttpRequest {
+    private final String method;
+    private final String url;
+    private final UnaryOperator<String> headers;
+
+    StubRequest(String method, String url) {
+        this(method, url, name -> null);
+    }
+
+    /**
+     * @param headers header value by name, or null if the header is absent
+     */
+    StubRequest(String method, String url, UnaryOperator<String> headers) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+    }
+
+    @Override
+    public String method() {
+        return method;
+    }
+
+    @Override
+    public String url() {
+        return url;
+    }
+
+    @Override
+    public String headerValue(String name) {
+        return headers.apply(name);
+    }
+
+    @Override
+    public boolean hasHeader(String name) {
+        return headers.apply(name) != null;
+    }
+
+    @Override
+    public boolean isInScope() {
+        return true;
+    }
+
+    // Not used by the handlers
+
+    public boolean hasHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpHeader header(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<HttpHeader> headers() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String httpVersion() {
+        throw new UnsupportedOperationException();
+    }
+
+    public int bodyOffset() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String bodyToString() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<Marker> markers() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean contains(String searchTerm, boolean caseSensitive) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean contains(Pattern pattern) {
+        throw new UnsupportedOperationException();
+    }
+
+    public ByteArray toByteArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    public ByteArray body() {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpService httpService() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String path() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String query() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String pathWithoutQuery() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String fileExtension() {
+        throw new UnsupportedOperationException();
+    }
+
+    public ContentType contentType() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<ParsedHttpParameter> parameters() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<ParsedHttpParameter> parameters(HttpParameterType type) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasParameters() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasParameters(HttpParameterType type) {
+        throw new UnsupportedOperationException();
+    }
+
+    public ParsedHttpParameter parameter(String name, HttpParameterType type) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String parameterValue(String name, HttpParameterType type) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasParameter(String name, HttpParameterType type) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasParameter(HttpParameter parameter) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest copyToTempFile() {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withService(HttpService service) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withPath(String path) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withMethod(String method) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withParameter(HttpParameter parameter) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withAddedParameters(List<? extends HttpParameter> parameters) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withAddedParameters(HttpParameter... parameters) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withRemovedParameters(List<? extends HttpParameter> parameters) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withRemovedParameters(HttpParameter... parameters) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withUpdatedParameters(List<? extends HttpParameter> parameters) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withUpdatedParameters(HttpParameter... parameters) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withTransformationApplied(HttpTransformation transformation) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withBody(String body) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withBody(ByteArray body) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withAddedHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withAddedHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withAddedHeaders(List<? extends HttpHeader> headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withAddedHeaders(HttpHeader... headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withUpdatedHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withUpdatedHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withUpdatedHeaders(List<? extends HttpHeader> headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withUpdatedHeaders(HttpHeader... headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withRemovedHeader(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withRemovedHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withRemovedHeaders(List<? extends HttpHeader> headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withRemovedHeaders(HttpHeader... headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withMarkers(List<Marker> markers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withMarkers(Marker... markers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpRequest withDefaultHeaders() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,261 @@
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.Marker;
+import burp.api.montoya.core.ToolSource;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.message.Cookie;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.StatusCodeClass;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.http.message.responses.analysis.Attribute;
+import burp.api.montoya.http.message.responses.analysis.AttributeType;
+import burp.api.montoya.http.message.responses.analysis.KeywordCount;
+
+/**
+ * A received response with everything the handlers read prepared up front. A plain class
+ * rather than a dynamic proxy, so calls with arguments allocate nothing and the GC profiler
+ * only sees the handlers' own allocations.
+ */
+final class StubResponse implements HttpResponseReceived {
+    private final HttpRequest request;
+    private final short statusCode;
+    private final UnaryOperator<String> headers;
+    private final MimeType inferredMimeType;
+    private final ByteArray body;
+    private final ToolSource toolSource;
+    private final Annotations annotations = new StubAnnotations();
+
+    /**
+     * @param headers header value by name, or null if the header is absent
+     */
+    StubResponse(HttpRequest request, short statusCode, UnaryOperator<String> headers,
+                 MimeType inferredMimeType, ByteArray body, ToolSource toolSource) {
+        this.request = request;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.inferredMimeType = inferredMimeType;
+        this.body = body;
+        this.toolSource = toolSource;
+    }
+
+    @Override
+    public HttpRequest initiatingRequest() {
+        return request;
+    }
+
+    @Override
+    public short statusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String headerValue(String name) {
+        return headers.apply(name);
+    }
+
+    @Override
+    public boolean hasHeader(String name) {
+        return headers.apply(name) != null;
+    }
+
+    @Override
+    public MimeType inferredMimeType() {
+        return inferredMimeType;
+    }
+
+    @Override
+    public MimeType mimeType() {
+        return inferredMimeType;
+    }
+
+    @Override
+    public ByteArray body() {
+        return body;
+    }
+
+    @Override
+    public ToolSource toolSource() {
+        return toolSource;
+    }
+
+    @Override
+    public Annotations annotations() {
+        return annotations;
+    }
+
+    // Not used by the handlers
+
+    public boolean hasHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpHeader header(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<HttpHeader> headers() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String httpVersion() {
+        throw new UnsupportedOperationException();
+    }
+
+    public int bodyOffset() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String bodyToString() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<Marker> markers() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean contains(String searchTerm, boolean caseSensitive) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean contains(Pattern pattern) {
+        throw new UnsupportedOperationException();
+    }
+
+    public ByteArray toByteArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String reasonPhrase() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isStatusCodeClass(StatusCodeClass statusCodeClass) {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<Cookie> cookies() {
+        throw new UnsupportedOperationException();
+    }
+
+    public Cookie cookie(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String cookieValue(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasCookie(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean hasCookie(Cookie cookie) {
+        throw new UnsupportedOperationException();
+    }
+
+    public MimeType statedMimeType() {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<KeywordCount> keywordCounts(String... keywords) {
+        throw new UnsupportedOperationException();
+    }
+
+    public List<Attribute> attributes(AttributeType... types) {
+        throw new UnsupportedOperationException();
+    }
+
+    public int messageId() {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse copyToTempFile() {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withStatusCode(short statusCode) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withReasonPhrase(String reasonPhrase) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withHttpVersion(String httpVersion) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withBody(String body) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withBody(ByteArray body) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withAddedHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withAddedHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withAddedHeaders(List<? extends HttpHeader> headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withAddedHeaders(HttpHeader... headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withUpdatedHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withUpdatedHeader(String name, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withUpdatedHeaders(List<? extends HttpHeader> headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withUpdatedHeaders(HttpHeader... headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withRemovedHeader(HttpHeader header) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withRemovedHeader(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withRemovedHeaders(List<? extends HttpHeader> headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withRemovedHeaders(HttpHeader... headers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withMarkers(List<Marker> markers) {
+        throw new UnsupportedOperationException();
+    }
+
+    public HttpResponse withMarkers(Marker... markers) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,28 @@
+import burp.api.montoya.core.ToolSource;
+import burp.api.montoya.core.ToolType;
+
+/**
+ * A fixed tool source
+ */
+final class StubToolSource implements ToolSource {
+    private final ToolType toolType;
+
+    StubToolSource(ToolType toolType) {
+        this.toolType = toolType;
+    }
+
+    @Override
+    public ToolType toolType() {
+        return toolType;
+    }
+
+    @Override
+    public boolean isFromTool(ToolType... toolTypes) {
+        for (ToolType candidate : toolTypes) {
+            if (candidate == toolType) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
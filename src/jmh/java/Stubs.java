@@ -0,0 +1,109 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.internal.MontoyaObjectFactory;
+import burp.api.montoya.internal.ObjectFactoryLocator;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.scope.Scope;
+import burp.api.montoya.ui.settings.SettingsPanelWithData;
+
+/**
+ * Lightweight stand-ins for the Montoya objects the handlers touch. Messages are plain
+ * classes ({@link StubResponse}, {@link StubRequest}) since they are called inside the
+ * measured code; objects only used during setup are dynamic proxies.
+ */
+final class Stubs {
+
+    static {
+        // Static factories such as ResponseReceivedAction.continueWith() are normally backed by Burp
+        ObjectFactoryLocator.FACTORY = proxy(MontoyaObjectFactory.class, (p, method, args) ->
+                method.getReturnType().isInterface() ? inert(method.getReturnType()) : null);
+    }
+
+    private Stubs() {
+    }
+
+    static MontoyaApi montoyaApi() {
+        Logging logging = proxy(Logging.class, (p, method, args) -> null);
+        return proxy(MontoyaApi.class, (p, method, args) ->
+                method.getName().equals("logging") ? logging : unsupported(method));
+    }
+
+    /**
+     * Settings panel holding the same defaults as {@link Extension#initialize}
+     */
+    static SettingsPanelWithData defaultSettings() {
+        return settings(defaultValues());
+    }
+
+    /**
+     * The default setting values, in a map that may be changed before passing it to {@link #settings}
+     */
+    static Map<String, Object> defaultValues() {
+        Map<String, Object> values = new HashMap<>();
+        Extension.DEFAULTS.forEach((name, value) ->
+                values.put(name, value instanceof HighlightColor color ? color.name() : value));
+        return values;
+    }
+
+    static SettingsPanelWithData settings(Map<String, Object> values) {
+        return proxy(SettingsPanelWithData.class, (p, method, args) -> switch (method.getName()) {
+            case "getString", "getBoolean", "getInteger" -> values.get((String) args[0]);
+            case "setString", "setBoolean", "setInteger" -> values.put((String) args[0], args[1]);
+            case "keys" -> values.keySet();
+            default -> unsupported(method);
+        });
+    }
+
+    static HttpRequest request(String method, String url) {
+        return new StubRequest(method, url);
+    }
+
+    static HttpResponseReceived response(HttpRequest request, int statusCode, String contentType,
+                                         MimeType inferredMimeType) {
+        return new StubResponse(request, (short) statusCode,
+                name -> "Content-Type".equalsIgnoreCase(name) ? contentType : null,
+                inferredMimeType, HarMessages.bytes(new byte[0]), new StubToolSource(ToolType.PROXY));
+    }
+
+    /**
+     * A project scope that includes everything
+     */
+    static ScopeCache scope() {
+        return new ScopeCache(proxy(Scope.class, (p, m, args) -> switch (m.getName()) {
+            case "isInScope" -> true;
+            default -> unsupported(m);
+        }), () -> "{\"target\":{\"scope\":{\"advanced_mode\":true,\"exclude\":[],"
+                + "\"include\":[{\"enabled\":true,\"protocol\":\"any\",\"host\":\".*\",\"file\":\".*\"}]}}}");
+    }
+
+    static Annotations annotations() {
+        return new StubAnnotations();
+    }
+
+    /**
+     * An object of the given type that ignores every call
+     */
+    private static Object inert(Class<?> type) {
+        return proxy(type, (p, method, args) -> null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    static Object unsupported(Method method) {
+        throw new UnsupportedOperationException("Stub does not implement " + method.getName());
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.message.MimeType;
+
+/**
+ * A shuffled, fixed-seed mix of responses shaped like typical proxy traffic:
+ * mostly successful GETs of pages, APIs and static assets, with a tail of
+ * redirects, caching, POSTs and errors.
+ */
+final class TrafficMix {
+    static final int SIZE = 1024;
+
+    private record Kind(int weight, String method, int status, String contentType, MimeType inferred) {
+    }
+
+    private static final Kind[] KINDS = {
+            new Kind(28, "GET", 200, "text/html; charset=utf-8", MimeType.HTML),
+            new Kind(22, "GET", 200, "application/json", MimeType.JSON),
+            new Kind(14, "GET", 200, "application/javascript", MimeType.SCRIPT),
+            new Kind(6, "GET", 200, "image/png", MimeType.IMAGE_PNG),
+            new Kind(10, "GET", 304, null, MimeType.NONE),
+            new Kind(5, "GET", 302, "text/html", MimeType.HTML),
+            new Kind(7, "POST", 200, "application/json", MimeType.JSON),
+            new Kind(2, "OPTIONS", 204, null, MimeType.NONE),
+            new Kind(4, "GET", 404, "text/html", MimeType.HTML),
+            new Kind(1, "POST", 500, "application/problem+json", MimeType.JSON),
+            new Kind(1, "GET", 101, null, MimeType.NONE)
+    };
+
+    private TrafficMix() {
+    }
+
+    static HttpResponseReceived[] responses() {
+        List<HttpResponseReceived> responses = new ArrayList<>(SIZE);
+        int totalWeight = 0;
+        for (Kind kind : KINDS) {
+            totalWeight += kind.weight();
+        }
+        for (Kind kind : KINDS) {
+            int count = Math.max(1, SIZE * kind.weight() / totalWeight);
+            for (int i = 0; i < count && responses.size() < SIZE; i++) {
+                String url = "https://app.example.com/api/items/" + responses.size();
+                responses.add(Stubs.response(Stubs.request(kind.method(), url),
+                        kind.status(), kind.contentType(), kind.inferred()));
+            }
+        }
+        while (responses.size() < SIZE) {
+            Kind kind = KINDS[0];
+            responses.add(Stubs.response(Stubs.request(kind.method(), "https://app.example.com/"),
+                    kind.status(), kind.contentType(), kind.inferred()));
+        }
+        Collections.shuffle(responses, new Random(42));
+        return responses.toArray(new HttpResponseReceived[0]);
+    }
+
+    /**
+     * The same mix as flat classifier inputs, with the content type already resolved
+     */
+    static ResponseFeatures[] features(ColorRules rules) {
+        HttpResponseReceived[] responses = responses();
+        ResponseFeatures[] features = new ResponseFeatures[responses.length];
+        for (int i = 0; i < responses.length; i++) {
+            features[i] = ResponseFeatureExtractor.extract(
+                    rules, responses[i].initiatingRequest(), responses[i]);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Streaming per-endpoint baseline for spotting responses that do not look like the rest.
+ * For each endpoint ({@link EndpointTemplate}) it keeps the running mean and variance
+ * ({@link RunningStats}) of the body length and how often each status class and content
+ * type was seen. A response is anomalous when its length is further than the configured
+ * number of standard deviations from the mean, or its status class or content type makes up
+ * less than 1% of what the endpoint returned so far. Endpoints are only judged once they have a baseline.
+ * <p>
+ * State is kept in lock-striped {@link LongLruCache}s keyed by the endpoint hash, so memory
+ * stays capped at the configured number of endpoints and the least recently seen ones are
+ * forgotten first.
+ */
+public class AnomalyDetector {
+    /** Responses an endpoint must have seen before it is judged */
+    static final int MIN_SAMPLES = 20;
+
+    static final double RARE_FRACTION = 0.01;
+    // Lengths rarely vary less than this, e.g. with timestamps or CSRF tokens in the page
+    static final double MIN_DEVIATION_BYTES = 16;
+    static final double MIN_DEVIATION_FRACTION = 0.02;
+
+    private static final int STRIPES = 16;
+
+    private volatile Stripe[] stripes = new Stripe[0];
+
+    /**
+     * Add a response to its endpoint's baseline and report whether it deviated from it.
+     * The response is judged against the statistics from before it was added.
+     *
+     * @param contentFamily MIME family of the Content-Type header, one of the {@code ResponseFeatures.MIME_*} ids
+     */
+    public boolean observe(ColorRules rules, String method, String url, short statusCode, int contentFamily,
+                           int bodyLength) {
+        long key = EndpointTemplate.hash(method, url);
+        Stripe stripe = stripes(rules.anomalyEndpoints())[(int) (key >>> 60) & (STRIPES - 1)];
+        synchronized (stripe) {
+            EndpointStats stats = stripe.endpoints.get(key);
+            if (stats == null) {
+                stats = new EndpointStats();
+                stripe.endpoints.put(key, stats);
+            }
+            boolean anomalous = stats.isAnomalous(rules.anomalyThreshold(), ResponseFeatures.statusClass(statusCode),
+                    contentFamily, bodyLength);
+            stats.add(ResponseFeatures.statusClass(statusCode), contentFamily, bodyLength);
+            return anomalous;
+        }
+    }
+
+    /**
+     * Number of endpoints currently tracked
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.endpoints.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.endpoints.clear();
+            }
+        }
+    }
+
+    /**
+     * Stripes sized for the configured capacity. Changing the capacity starts over with empty baselines.
+     */
+    private Stripe[] stripes(int capacity) {
+        Stripe[] current = stripes;
+        int perStripe = Math.max(1, capacity / STRIPES);
+        if (current.length == STRIPES && current[0].capacity == perStripe) {
+            return current;
+        }
+        synchronized (this) {
+            current = stripes;
+            if (current.length != STRIPES || current[0].capacity != perStripe) {
+                current = new Stripe[STRIPES];
+                for (int i = 0; i < STRIPES; i++) {
+                    current[i] = new Stripe(perStripe);
+                }
+                stripes = current;
+            }
+            return current;
+        }
+    }
+
+    private static final class Stripe {
+        final int capacity;
+        final LongLruCache<EndpointStats> endpoints;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.endpoints = new LongLruCache<>(capacity);
+        }
+    }
+
+    /**
+     * Running statistics of one endpoint
+     */
+    static final class EndpointStats {
+        private final RunningStats lengths = new RunningStats();
+        private final int[] statusClasses = new int[ResponseFeatures.STATUS_CLASSES];
+        private final int[] contentFamilies = new int[ResponseFeatures.MIME_FAMILIES];
+
+        boolean isAnomalous(int threshold, int statusClass, int contentFamily, int bodyLength) {
+            long count = lengths.count();
+            if (count < MIN_SAMPLES) {
+                return false;
+            }
+            if (statusClasses[statusClass] < count * RARE_FRACTION
+                    || contentFamilies[contentFamily] < count * RARE_FRACTION) {
+                return true;
+            }
+            double floor = Math.max(MIN_DEVIATION_BYTES, lengths.mean() * MIN_DEVIATION_FRACTION);
+            return lengths.isOutlier(bodyLength, threshold, floor);
+        }
+
+        void add(int statusClass, int contentFamily, int bodyLength) {
+            lengths.add(bodyLength);
+            statusClasses[statusClass]++;
+            contentFamilies[contentFamily]++;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import burp.api.montoya.core.ByteArray;
+
+/**
+ * Bloom filter over 64-bit keys, sized from the expected number of keys and the accepted
+ * false positive rate. Bits are set with compare-and-set, so any number of threads may add
+ * keys without locking. The bit positions are derived from the key alone (double hashing),
+ * so keys should already be well mixed, e.g. {@link EndpointTemplate#hash}.
+ */
+public final class BloomFilter {
+    private static final int FORMAT = 2;
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 4 + 4;
+    // Words copied at a time when serializing, so no copy of the whole filter is ever made
+    private static final int CHUNK_WORDS = 8192;
+
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLongArray words;
+
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        this.expectedKeys = Math.max(1, expectedKeys);
+        this.falsePositiveRate = rate(falsePositiveRate);
+        int wordCount = wordCount(this.expectedKeys, this.falsePositiveRate);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = hashCount(this.expectedKeys, bitCount);
+        this.words = new AtomicLongArray(wordCount);
+    }
+
+    private static double rate(double falsePositiveRate) {
+        return Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+    }
+
+    private static int wordCount(long expectedKeys, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+    }
+
+    private static int hashCount(long expectedKeys, long bitCount) {
+        return (int) Math.max(1, Math.min(30, Math.round((double) bitCount / expectedKeys * Math.log(2))));
+    }
+
+    /**
+     * Add a key. Returns true if it was definitely not present before, false if it was
+     * (or, with the configured probability, if it collides with keys that were).
+     */
+    public boolean add(long key) {
+        long step = Long.rotateLeft(key, 32) * 0x9E3779B97F4A7C15L | 1;
+        boolean added = false;
+        long h = key;
+        for (int i = 0; i < hashCount; i++, h += step) {
+            long bit = Long.remainderUnsigned(h, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0) {
+                if (words.compareAndSet(index, word, word | mask)) {
+                    added = true;
+                    break;
+                }
+                word = words.get(index);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Whether the key may have been added
+     */
+    public boolean mightContain(long key) {
+        long step = Long.rotateLeft(key, 32) * 0x9E3779B97F4A7C15L | 1;
+        long h = key;
+        for (int i = 0; i < hashCount; i++, h += step) {
+            long bit = Long.remainderUnsigned(h, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether this filter was built for the same size and rate, so its bits can be exchanged with the other's
+     */
+    public boolean isCompatible(long expectedKeys, double falsePositiveRate) {
+        return this.expectedKeys == Math.max(1, expectedKeys)
+                && this.falsePositiveRate == rate(falsePositiveRate);
+    }
+
+    /**
+     * Memory used by the bits, in bytes
+     */
+    public long sizeInBytes() {
+        return bitCount >>> 3;
+    }
+
+    /**
+     * Add every key of a compatible filter to this one
+     */
+    public void addAll(BloomFilter other) {
+        for (int i = 0; i < words.length(); i++) {
+            long bits = other.words.get(i);
+            if (bits != 0) {
+                words.getAndAccumulate(i, bits, (a, b) -> a | b);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    /**
+     * Serialize the parameters and bits straight into a new {@link ByteArray}, a chunk at a time.
+     * Keys added concurrently may or may not be included.
+     */
+    public ByteArray toByteArray() {
+        long length = HEADER_BYTES + (long) words.length() * 8;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Filter too large to store: " + length + " bytes");
+        }
+        ByteArray data = ByteArray.byteArrayOfLength((int) length);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(FORMAT).putLong(expectedKeys).putDouble(falsePositiveRate).putInt(hashCount)
+                .putInt(words.length());
+        data.setBytes(0, header.array());
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_WORDS * 8);
+        int offset = HEADER_BYTES;
+        for (int start = 0; start < words.length(); start += CHUNK_WORDS) {
+            buffer.clear();
+            int end = Math.min(words.length(), start + CHUNK_WORDS);
+            for (int i = start; i < end; i++) {
+                buffer.putLong(words.get(i));
+            }
+            int written = buffer.position();
+            data.setBytes(offset, written == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), written));
+            offset += written;
+        }
+        return data;
+    }
+
+    /**
+     * Restore a filter written by {@link #toByteArray}, or return null if the data is not a
+     * filter with the given parameters. The header is checked against the parameters, and
+     * the length against the header, before anything is allocated, so corrupt or outdated
+     * data is rejected instead of sizing the filter.
+     */
+    public static BloomFilter fromByteArray(ByteArray data, long expectedKeys, double falsePositiveRate) {
+        if (data == null || data.length() < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data.subArray(0, HEADER_BYTES).getBytes());
+        long keys = Math.max(1, expectedKeys);
+        double rate = rate(falsePositiveRate);
+        if (header.getInt() != FORMAT || header.getLong() != keys || header.getDouble() != rate
+                || keys > ColorRules.MAX_FIRST_SEEN_CAPACITY) {
+            return null;
+        }
+        int wordCount = wordCount(keys, rate);
+        if (header.getInt() != hashCount(keys, (long) wordCount << 6) || header.getInt() != wordCount
+                || data.length() != HEADER_BYTES + (long) wordCount * 8) {
+            return null;
+        }
+
+        BloomFilter filter = new BloomFilter(keys, rate);
+        int offset = HEADER_BYTES;
+        for (int start = 0; start < wordCount; start += CHUNK_WORDS) {
+            int end = Math.min(wordCount, start + CHUNK_WORDS);
+            int next = offset + (end - start) * 8;
+            ByteBuffer chunk = ByteBuffer.wrap(data.subArray(offset, next).getBytes());
+            for (int i = start; i < end; i++) {
+                filter.words.set(i, chunk.getLong());
+            }
+            offset = next;
+        }
+        return filter;
+    }
+}
@@ -0,0 +1,78 @@
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+/**
+ * Non-modal progress window for a {@link BulkRunner.Job}, with a cancel button.
+ * It polls the job's counters on a Swing timer, so workers never post to the EDT per item.
+ */
+class BulkProgressDialog {
+    private static final int REFRESH_MILLIS = 200;
+
+    private final JDialog dialog;
+    private final JProgressBar progressBar;
+    private final JLabel status;
+    private final Timer timer;
+
+    /**
+     * Must be called on the EDT
+     */
+    BulkProgressDialog(Frame owner, String title, BulkRunner.Job job) {
+        dialog = new JDialog(owner, title, false);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading items...");
+        status = new JLabel(" ");
+
+        JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(e -> {
+            job.cancel();
+            cancel.setEnabled(false);
+            status.setText("Cancelling...");
+        });
+
+        JPanel content = new JPanel(new BorderLayout(8, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        content.add(progressBar, BorderLayout.NORTH);
+        content.add(status, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.add(cancel);
+        content.add(buttons, BorderLayout.SOUTH);
+        dialog.setContentPane(content);
+        dialog.setSize(420, 140);
+        dialog.setLocationRelativeTo(owner);
+
+        timer = new Timer(REFRESH_MILLIS, e -> refresh(job));
+    }
+
+    void show() {
+        timer.start();
+        dialog.setVisible(true);
+    }
+
+    private void refresh(BulkRunner.Job job) {
+        int total = job.total();
+        if (total >= 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(Math.max(total, 1));
+            progressBar.setValue(job.processed());
+            progressBar.setString(job.processed() + " / " + total);
+            status.setText(job.matched() + " item(s) changed");
+        }
+        if (job.isDone()) {
+            timer.stop();
+            dialog.dispose();
+        }
+    }
+}
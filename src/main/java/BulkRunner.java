@@ -0,0 +1,172 @@
+import java.awt.Frame;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import burp.api.montoya.MontoyaApi;
+
+/**
+ * Runs bulk highlight operations off the EDT. Items are loaded on a coordinator thread,
+ * split into chunks and processed in parallel on a worker pool sized to the CPU count,
+ * while a progress dialog with a cancel button is shown. A single summary line with the
+ * item rate is logged when the job finishes, and the time per item goes to {@link CrayonMetrics}.
+ */
+public class BulkRunner {
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * Work done for each item; returns true if the item was changed
+     */
+    public interface ItemAction<T> {
+        boolean apply(T item);
+    }
+
+    private final MontoyaApi api;
+    private final CrayonLog log;
+    private final CrayonMetrics.HandlerMetrics metrics;
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+
+    public BulkRunner(MontoyaApi api, CrayonLog log, CrayonMetrics metrics) {
+        this.api = api;
+        this.log = log;
+        this.metrics = metrics.handler(CrayonMetrics.Handler.BULK);
+        this.coordinator = Executors.newCachedThreadPool(daemonThreads("Crayon bulk job"));
+        this.workers = Executors.newFixedThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors()),
+                daemonThreads("Crayon bulk worker"));
+    }
+
+    /**
+     * Start a job in the background and show its progress. May be called from any thread.
+     */
+    public <T> Job start(String title, Callable<List<T>> loader, ItemAction<T> action) {
+        return start(title, loader, action, null);
+    }
+
+    /**
+     * Start a job and run {@code onDone} on the job thread once it finished, failed or was cancelled
+     */
+    public <T> Job start(String title, Callable<List<T>> loader, ItemAction<T> action, Runnable onDone) {
+        Job job = new Job();
+        SwingUtilities.invokeLater(() -> {
+            Frame owner = api.userInterface().swingUtils().suiteFrame();
+            new BulkProgressDialog(owner, title, job).show();
+        });
+        coordinator.execute(() -> {
+            try {
+                run(title, job, loader, action);
+            } finally {
+                if (onDone != null) {
+                    onDone.run();
+                }
+            }
+        });
+        return job;
+    }
+
+    public void close() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private <T> void run(String title, Job job, Callable<List<T>> loader, ItemAction<T> action) {
+        long start = System.nanoTime();
+        try {
+            List<T> items = loader.call();
+            job.total.set(items.size());
+
+            CompletableFuture<?>[] chunks = new CompletableFuture<?>[(items.size() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            for (int i = 0; i < chunks.length; i++) {
+                List<T> chunk = items.subList(i * CHUNK_SIZE, Math.min(items.size(), (i + 1) * CHUNK_SIZE));
+                chunks[i] = CompletableFuture.runAsync(() -> processChunk(job, chunk, action), workers);
+            }
+            CompletableFuture.allOf(chunks).join();
+        } catch (Exception e) {
+            log.error("Crayon: " + title + " failed: " + e);
+        } finally {
+            job.done = true;
+            long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            long rate = job.processed() * 1000L / elapsedMillis;
+            log.info("Crayon: " + title + ": changed " + job.matched() + " of " + job.processed()
+                    + " item(s) in " + elapsedMillis + " ms (" + rate + " items/s)"
+                    + (job.isCancelled() ? ", cancelled" : ""));
+        }
+    }
+
+    private <T> void processChunk(Job job, List<T> chunk, ItemAction<T> action) {
+        int matched = 0;
+        int processed = 0;
+        for (T item : chunk) {
+            if (job.isCancelled()) {
+                break;
+            }
+            long start = System.nanoTime();
+            try {
+                if (action.apply(item)) {
+                    matched++;
+                }
+            } catch (Exception e) {
+                log.debug(() -> "Crayon: Bulk item failed: " + e);
+            }
+            // Bulk actions set or clear colors, so only the time per item is recorded
+            metrics.latency().record(System.nanoTime() - start);
+            processed++;
+        }
+        job.processed.addAndGet(processed);
+        job.matched.addAndGet(matched);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + " " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Progress and cancellation handle for a running bulk operation
+     */
+    public static final class Job {
+        private final AtomicInteger total = new AtomicInteger(-1);
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger matched = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Number of items in the job, or -1 while they are still being loaded
+         */
+        public int total() {
+            return total.get();
+        }
+
+        public int processed() {
+            return processed.get();
+        }
+
+        public int matched() {
+            return matched.get();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+import burp.api.montoya.core.ByteArray;
+
+/**
+ * Aho-Corasick automaton over raw bytes. All patterns are matched in a single pass with one
+ * table lookup per input byte, so the cost does not grow with the number of patterns.
+ * Bytes that appear in no pattern share one input class, which keeps the table small.
+ * A scan reports the lowest pattern index found, i.e. the highest-priority rule.
+ */
+public final class BytePatternMatcher {
+    public static final int NO_MATCH = -1;
+
+    private final int[] byteClass = new int[256];
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] bestOutput;
+    private final int minPatternLength;
+
+    /**
+     * Build an automaton for the given patterns; a pattern's list position is its priority
+     */
+    public BytePatternMatcher(List<String> patterns) {
+        byte[][] encoded = new byte[patterns.size()][];
+        int totalLength = 0;
+        int minLength = Integer.MAX_VALUE;
+        int classes = 1;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = patterns.get(i).getBytes(StandardCharsets.UTF_8);
+            totalLength += encoded[i].length;
+            minLength = Math.min(minLength, encoded[i].length);
+            for (byte b : encoded[i]) {
+                if (byteClass[b & 0xFF] == 0) {
+                    byteClass[b & 0xFF] = classes++;
+                }
+            }
+        }
+        this.classCount = classes;
+        this.minPatternLength = encoded.length == 0 ? Integer.MAX_VALUE : Math.max(1, minLength);
+
+        // Trie over byte classes; unused transitions are -1 until the automaton is completed
+        int maxStates = totalLength + 1;
+        int[] next = new int[maxStates * classCount];
+        Arrays.fill(next, -1);
+        int[] output = new int[maxStates];
+        Arrays.fill(output, Integer.MAX_VALUE);
+        int states = 1;
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i].length == 0) {
+                continue;
+            }
+            int state = 0;
+            for (byte b : encoded[i]) {
+                int slot = state * classCount + byteClass[b & 0xFF];
+                if (next[slot] < 0) {
+                    next[slot] = states++;
+                }
+                state = next[slot];
+            }
+            output[state] = Math.min(output[state], i);
+        }
+
+        // Breadth-first pass turns the trie into a complete DFA and merges outputs along failure links
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            int child = next[c];
+            if (child < 0) {
+                next[c] = 0;
+            } else {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] = Math.min(output[state], output[failure[state]]);
+            for (int c = 0; c < classCount; c++) {
+                int slot = state * classCount + c;
+                int child = next[slot];
+                int fallback = next[failure[state] * classCount + c];
+                if (child < 0) {
+                    next[slot] = fallback;
+                } else {
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(next, states * classCount);
+        this.bestOutput = new int[states];
+        for (int s = 0; s < states; s++) {
+            bestOutput[s] = output[s] == Integer.MAX_VALUE ? NO_MATCH : output[s];
+        }
+    }
+
+    public boolean isEmpty() {
+        return minPatternLength == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Scan up to {@code limit} bytes and return the lowest matching pattern index, or {@link #NO_MATCH}
+     */
+    public int firstMatch(ByteArray data, int limit) {
+        int length = Math.min(data.length(), limit);
+        if (length < minPatternLength) {
+            return NO_MATCH;
+        }
+        int best = NO_MATCH;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * classCount + byteClass[data.getByte(i) & 0xFF]];
+            int found = bestOutput[state];
+            if (found != NO_MATCH && (best == NO_MATCH || found < best)) {
+                best = found;
+                if (best == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scan up to {@code limit} bytes of an array, for callers outside Burp
+     */
+    public int firstMatch(byte[] data, int limit) {
+        int length = Math.min(data.length, limit);
+        if (length < minPatternLength) {
+            return NO_MATCH;
+        }
+        int best = NO_MATCH;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * classCount + byteClass[data[i] & 0xFF]];
+            int found = bestOutput[state];
+            if (found != NO_MATCH && (best == NO_MATCH || found < best)) {
+                best = found;
+                if (best == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scan up to {@code limit} characters of text. Only ASCII characters can take part in a match,
+     * so patterns containing non-ASCII characters never match text.
+     */
+    public int firstMatch(CharSequence text, int limit) {
+        int length = Math.min(text.length(), limit);
+        if (length < minPatternLength) {
+            return NO_MATCH;
+        }
+        int best = NO_MATCH;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            state = transitions[state * classCount + (c < 0x80 ? byteClass[c] : 0)];
+            int found = bestOutput[state];
+            if (found != NO_MATCH && (best == NO_MATCH || found < best)) {
+                best = found;
+                if (best == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+}
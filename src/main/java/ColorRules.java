@@ -0,0 +1,655 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.ui.settings.SettingsPanelWithData;
+
+/**
+ * Immutable snapshot of the Crayon settings and rules file, compiled into lookup tables so that
+ * the traffic handlers never touch the settings panel or parse color names.
+ */
+public final class ColorRules {
+    private enum Kind {
+        STRING,
+        BOOLEAN,
+        INTEGER;
+
+        /**
+         * How a setting with this default value is read from the panel; colors are list settings read as text
+         */
+        static Kind of(Object defaultValue) {
+            if (defaultValue instanceof Boolean) {
+                return BOOLEAN;
+            }
+            return defaultValue instanceof Integer ? INTEGER : STRING;
+        }
+    }
+
+    private record Setting(String name, Kind kind) {
+    }
+
+    // Settings read into each snapshot, in panel order so raw values can be compared cheaply.
+    // Derived from the defaults, which also build the panel, so a new setting is declared once.
+    private static final Setting[] SETTINGS = Extension.DEFAULTS.entrySet().stream()
+            .map(setting -> new Setting(setting.getKey(), Kind.of(setting.getValue())))
+            .toArray(Setting[]::new);
+    private static final Map<String, Integer> POSITIONS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < SETTINGS.length; i++) {
+            POSITIONS.put(SETTINGS[i].name(), i);
+        }
+    }
+
+    private static final int DEFAULT_BODY_SCAN_WINDOW_KB = 64;
+    private static final int DEFAULT_WEBSOCKET_SCAN_WINDOW_KB = 64;
+    private static final int DEFAULT_HEADER_ONLY_THRESHOLD_KB = 1024;
+    private static final int DEFAULT_WEBSOCKET_SHAPE_MEMORY = 4096;
+    // Shapes are remembered per socket, so this caps the memory of each one at a few megabytes
+    private static final int MAX_WEBSOCKET_SHAPE_MEMORY = 65536;
+    private static final int DEFAULT_ANOMALY_THRESHOLD = 3;
+    private static final int DEFAULT_ANOMALY_ENDPOINTS = 65536;
+    private static final int MAX_ANOMALY_ENDPOINTS = 1 << 20;
+    private static final int DEFAULT_FIRST_SEEN_CAPACITY = 1000000;
+    // About 240 MB of filter at the default false positive rate
+    static final int MAX_FIRST_SEEN_CAPACITY = 100000000;
+    private static final int DEFAULT_FIRST_SEEN_FALSE_POSITIVE = 10000;
+
+    // Per-tool switches; tools without a setting are always enabled
+    private static final Map<ToolType, String> TOOL_SETTINGS = Map.of(
+            ToolType.PROXY, Extension.TOOL_PROXY_SETTING,
+            ToolType.TARGET, Extension.TOOL_TARGET_SETTING,
+            ToolType.INTRUDER, Extension.TOOL_INTRUDER_SETTING,
+            ToolType.SCANNER, Extension.TOOL_SCANNER_SETTING,
+            ToolType.SEQUENCER, Extension.TOOL_SEQUENCER_SETTING,
+            ToolType.REPEATER, Extension.TOOL_REPEATER_SETTING,
+            ToolType.EXTENSIONS, Extension.TOOL_EXTENSIONS_SETTING);
+
+    private final Object[] source;
+    private final RulesFile rulesFile;
+    private final HighlightColor[] responseColors;
+    private final boolean[] mimeSensitive;
+    private final BytePatternMatcher bodyMatcher;
+    private final String[] bodyRulePatterns;
+    private final HighlightColor[] bodyRuleColors;
+    private final int bodyScanLimit;
+    private final long headerOnlyAbove;
+    private final UrlRuleIndex urlIndex;
+    private final String[] urlRulePatterns;
+    private final HighlightColor[] urlRuleColors;
+    private final HighlightColor websocketIncoming;
+    private final HighlightColor websocketOutgoing;
+    private final String[] websocketPrefixes;
+    private final HighlightColor[] websocketPrefixColors;
+    private final BytePatternMatcher websocketTextMatcher;
+    private final int websocketScanLimit;
+    private final HighlightColor[] websocketTextColors;
+    private final HighlightColor[] websocketOpcodeColors;
+    private final boolean hasWebsocketBinaryRules;
+    private final boolean websocketNewShapesOnly;
+    private final int websocketShapeMemory;
+    private final boolean anomalyDetection;
+    private final HighlightColor anomalyColor;
+    private final int anomalyThreshold;
+    private final int anomalyEndpoints;
+    private final boolean firstSeenOnly;
+    private final int firstSeenCapacity;
+    private final double firstSeenFalsePositiveRate;
+    private final boolean firstSeenPersist;
+    private final boolean intruderOutliers;
+    private final HighlightColor intruderOutlierColor;
+    private final boolean inScopeOnly;
+    private final boolean backgroundClassification;
+    private final boolean[] toolEnabled;
+    private final boolean logEnabled;
+    private final boolean debugMode;
+
+    private ColorRules(Object[] source, RulesFile rulesFile, Logging logging) {
+        this.source = source;
+        this.rulesFile = rulesFile;
+        Object[] values = withOverrides(source, rulesFile);
+
+        HighlightColor html = parseColor(values, Extension.HTML_COLOR_SETTING, logging);
+        HighlightColor json = parseColor(values, Extension.JSON_COLOR_SETTING, logging);
+        HighlightColor xml = parseColor(values, Extension.XML_COLOR_SETTING, logging);
+        HighlightColor text = parseColor(values, Extension.TEXT_COLOR_SETTING, logging);
+        HighlightColor status5xx = parseColor(values, Extension.STATUS_5XX_COLOR_SETTING, logging);
+        HighlightColor status4xx = parseColor(values, Extension.STATUS_4XX_COLOR_SETTING, logging);
+        HighlightColor status3xx = parseColor(values, Extension.STATUS_3XX_COLOR_SETTING, logging);
+        HighlightColor get = parseColor(values, Extension.STATUS_200_GET_COLOR_SETTING, logging);
+        HighlightColor getJson = parseColor(values, Extension.STATUS_200_GET_JSON_COLOR_SETTING, logging);
+        HighlightColor getHtml = parseColor(values, Extension.STATUS_200_GET_HTML_COLOR_SETTING, logging);
+        HighlightColor post = parseColor(values, Extension.STATUS_200_POST_COLOR_SETTING, logging);
+        HighlightColor other = parseColor(values, Extension.STATUS_200_OTHER_COLOR_SETTING, logging);
+
+        HighlightColor[] mimeColors = new HighlightColor[ResponseFeatures.MIME_FAMILIES];
+        mimeColors[ResponseFeatures.MIME_JSON] = json;
+        mimeColors[ResponseFeatures.MIME_XML] = xml;
+        mimeColors[ResponseFeatures.MIME_HTML] = html;
+        mimeColors[ResponseFeatures.MIME_TEXT] = text;
+        // The content type fallback checks XML before HTML
+        mimeColors[ResponseFeatures.MIME_XHTML] = xml;
+
+        this.responseColors = new HighlightColor[
+                ResponseFeatures.STATUS_CLASSES * ResponseFeatures.METHODS * ResponseFeatures.MIME_FAMILIES];
+        this.mimeSensitive = new boolean[ResponseFeatures.STATUS_CLASSES * ResponseFeatures.METHODS];
+        for (int status = 0; status < ResponseFeatures.STATUS_CLASSES; status++) {
+            for (int method = 0; method < ResponseFeatures.METHODS; method++) {
+                HighlightColor first = null;
+                for (int mime = 0; mime < ResponseFeatures.MIME_FAMILIES; mime++) {
+                    HighlightColor color;
+
+                    // Prioritize status codes over content types
+                    if (status == ResponseFeatures.STATUS_5XX) {
+                        color = status5xx;
+                    } else if (status == ResponseFeatures.STATUS_4XX) {
+                        color = status4xx;
+                    } else if (status == ResponseFeatures.STATUS_3XX) {
+                        color = status3xx;
+                    } else if (status == ResponseFeatures.STATUS_2XX) {
+                        if (method == ResponseFeatures.METHOD_GET) {
+                            color = null;
+                            if (mime == ResponseFeatures.MIME_JSON) {
+                                color = getJson;
+                            } else if (mime == ResponseFeatures.MIME_HTML || mime == ResponseFeatures.MIME_XHTML) {
+                                color = getHtml;
+                            }
+                            // Fallback to general GET color if specific content type color is not set
+                            if (color == null) {
+                                color = get;
+                            }
+                        } else if (method == ResponseFeatures.METHOD_POST) {
+                            color = post;
+                        } else {
+                            color = other;
+                        }
+                    } else {
+                        color = null;
+                    }
+
+                    // If no status code color was set, fall back to the content type color
+                    if (color == null) {
+                        color = mimeColors[mime];
+                    }
+                    responseColors[index(status, method, mime)] = color;
+                    if (mime == 0) {
+                        first = color;
+                    } else if (color != first) {
+                        mimeSensitive[status * ResponseFeatures.METHODS + method] = true;
+                    }
+                }
+            }
+        }
+
+        this.websocketIncoming = parseColor(values, Extension.WEBSOCKET_INCOMING_COLOR_SETTING, logging);
+        this.websocketOutgoing = parseColor(values, Extension.WEBSOCKET_OUTGOING_COLOR_SETTING, logging);
+        this.websocketNewShapesOnly = Boolean.TRUE.equals(value(values, Extension.WEBSOCKET_NEW_SHAPES_SETTING));
+        Integer shapeMemory = (Integer) value(values, Extension.WEBSOCKET_SHAPE_MEMORY_SETTING);
+        this.websocketShapeMemory = Math.min(MAX_WEBSOCKET_SHAPE_MEMORY,
+                Math.max(1, shapeMemory != null ? shapeMemory : DEFAULT_WEBSOCKET_SHAPE_MEMORY));
+        this.anomalyColor = parseColor(values, Extension.ANOMALY_COLOR_SETTING, logging);
+        this.anomalyDetection = anomalyColor != null && Boolean.TRUE.equals(value(values, Extension.ANOMALY_ENABLED_SETTING));
+        Integer threshold = (Integer) value(values, Extension.ANOMALY_THRESHOLD_SETTING);
+        this.anomalyThreshold = Math.max(1, threshold != null ? threshold : DEFAULT_ANOMALY_THRESHOLD);
+        Integer endpoints = (Integer) value(values, Extension.ANOMALY_ENDPOINTS_SETTING);
+        this.anomalyEndpoints = Math.min(MAX_ANOMALY_ENDPOINTS,
+                Math.max(1, endpoints != null ? endpoints : DEFAULT_ANOMALY_ENDPOINTS));
+        this.firstSeenOnly = Boolean.TRUE.equals(value(values, Extension.FIRST_SEEN_SETTING));
+        Integer firstSeenCapacity = (Integer) value(values, Extension.FIRST_SEEN_CAPACITY_SETTING);
+        this.firstSeenCapacity = Math.min(MAX_FIRST_SEEN_CAPACITY,
+                Math.max(1, firstSeenCapacity != null ? firstSeenCapacity : DEFAULT_FIRST_SEEN_CAPACITY));
+        Integer oneIn = (Integer) value(values, Extension.FIRST_SEEN_FALSE_POSITIVE_SETTING);
+        this.firstSeenFalsePositiveRate = 1.0 / Math.max(2, oneIn != null ? oneIn : DEFAULT_FIRST_SEEN_FALSE_POSITIVE);
+        this.firstSeenPersist = Boolean.TRUE.equals(value(values, Extension.FIRST_SEEN_PERSIST_SETTING));
+        this.intruderOutliers = Boolean.TRUE.equals(value(values, Extension.INTRUDER_OUTLIERS_SETTING));
+        this.intruderOutlierColor = parseColor(values, Extension.INTRUDER_OUTLIER_COLOR_SETTING, logging);
+        this.inScopeOnly = Boolean.TRUE.equals(value(values, Extension.IN_SCOPE_ONLY_SETTING));
+        this.backgroundClassification = Boolean.TRUE.equals(value(values, Extension.BACKGROUND_CLASSIFICATION_SETTING));
+        this.toolEnabled = new boolean[ToolType.values().length];
+        for (ToolType toolType : ToolType.values()) {
+            String setting = TOOL_SETTINGS.get(toolType);
+            toolEnabled[toolType.ordinal()] = setting == null || !Boolean.FALSE.equals(value(values, setting));
+        }
+        this.logEnabled = Boolean.TRUE.equals(value(values, Extension.LOG_ENABLED_SETTING));
+        this.debugMode = Boolean.TRUE.equals(value(values, Extension.DEBUG_MODE_SETTING));
+
+        List<String> bodyPatterns = new ArrayList<>();
+        List<HighlightColor> bodyColors = new ArrayList<>();
+        addFileRules(rulesFile, RulesFile.Kind.BODY, bodyPatterns, bodyColors, logging);
+        parseRules((String) value(values, Extension.BODY_RULES_SETTING), bodyPatterns, bodyColors, logging);
+        this.bodyMatcher = new BytePatternMatcher(bodyPatterns);
+        this.bodyRulePatterns = bodyPatterns.toArray(new String[0]);
+        this.bodyRuleColors = bodyColors.toArray(new HighlightColor[0]);
+        Integer scanWindowKb = (Integer) value(values, Extension.BODY_SCAN_WINDOW_SETTING);
+        this.bodyScanLimit = Math.max(0, scanWindowKb != null ? scanWindowKb : DEFAULT_BODY_SCAN_WINDOW_KB) * 1024;
+        Integer headerOnlyKb = (Integer) value(values, Extension.HEADER_ONLY_THRESHOLD_SETTING);
+        int headerOnlyLimit = headerOnlyKb != null ? headerOnlyKb : DEFAULT_HEADER_ONLY_THRESHOLD_KB;
+        this.headerOnlyAbove = headerOnlyLimit > 0 ? headerOnlyLimit * 1024L : Long.MAX_VALUE;
+
+        List<String> urlPatterns = new ArrayList<>();
+        List<HighlightColor> urlColors = new ArrayList<>();
+        addFileRules(rulesFile, RulesFile.Kind.URL, urlPatterns, urlColors, logging);
+        parseRules((String) value(values, Extension.URL_RULES_SETTING), urlPatterns, urlColors, logging);
+        this.urlIndex = new UrlRuleIndex(urlPatterns);
+        this.urlRulePatterns = urlPatterns.toArray(new String[0]);
+        this.urlRuleColors = urlColors.toArray(new HighlightColor[0]);
+
+        // Text frame rules: '^prefix' entries are anchored, everything else goes into one automaton
+        List<String> textPatterns = new ArrayList<>();
+        List<HighlightColor> textColors = new ArrayList<>();
+        addFileRules(rulesFile, RulesFile.Kind.WEBSOCKET_TEXT, textPatterns, textColors, logging);
+        parseRules((String) value(values, Extension.WEBSOCKET_TEXT_RULES_SETTING), textPatterns, textColors, logging);
+        List<String> prefixes = new ArrayList<>();
+        List<HighlightColor> prefixColors = new ArrayList<>();
+        List<String> containsPatterns = new ArrayList<>();
+        List<HighlightColor> containsColors = new ArrayList<>();
+        for (int i = 0; i < textPatterns.size(); i++) {
+            String pattern = textPatterns.get(i);
+            if (pattern.startsWith("^") && pattern.length() > 1) {
+                prefixes.add(pattern.substring(1));
+                prefixColors.add(textColors.get(i));
+            } else {
+                containsPatterns.add(pattern);
+                containsColors.add(textColors.get(i));
+            }
+        }
+        this.websocketPrefixes = prefixes.toArray(new String[0]);
+        this.websocketPrefixColors = prefixColors.toArray(new HighlightColor[0]);
+        this.websocketTextMatcher = new BytePatternMatcher(containsPatterns);
+        this.websocketTextColors = containsColors.toArray(new HighlightColor[0]);
+        Integer websocketWindowKb = (Integer) value(values, Extension.WEBSOCKET_SCAN_WINDOW_SETTING);
+        this.websocketScanLimit = Math.max(0,
+                websocketWindowKb != null ? websocketWindowKb : DEFAULT_WEBSOCKET_SCAN_WINDOW_KB) * 1024;
+
+        // Binary frame rules are keyed on the first payload byte (the message type / opcode of most protocols)
+        this.websocketOpcodeColors = new HighlightColor[256];
+        List<String> opcodes = new ArrayList<>();
+        List<HighlightColor> opcodeColors = new ArrayList<>();
+        addFileRules(rulesFile, RulesFile.Kind.WEBSOCKET_BINARY, opcodes, opcodeColors, logging);
+        parseRules((String) value(values, Extension.WEBSOCKET_BINARY_RULES_SETTING), opcodes, opcodeColors, logging);
+        for (int i = 0; i < opcodes.size(); i++) {
+            try {
+                int opcode = Integer.decode(opcodes.get(i));
+                if (opcode >= 0 && opcode < 256 && websocketOpcodeColors[opcode] == null) {
+                    websocketOpcodeColors[opcode] = opcodeColors.get(i);
+                }
+            } catch (NumberFormatException e) {
+                logging.logToError("Invalid WebSocket binary rule (expected 0xNN=COLOR): " + opcodes.get(i));
+            }
+        }
+        this.hasWebsocketBinaryRules = !opcodes.isEmpty();
+    }
+
+    /**
+     * Compile a snapshot from the current values of the settings panel
+     */
+    public static ColorRules compile(SettingsPanelWithData settings, Logging logging) {
+        return compile(readSource(settings), RulesFile.EMPTY, logging);
+    }
+
+    /**
+     * Compile a snapshot from raw values previously read with {@link #readSource} and a loaded rules file
+     */
+    static ColorRules compile(Object[] source, RulesFile rulesFile, Logging logging) {
+        return new ColorRules(source, rulesFile, logging);
+    }
+
+    /**
+     * Read the raw setting values that a snapshot is compiled from
+     */
+    static Object[] readSource(SettingsPanelWithData settings) {
+        Object[] source = new Object[SETTINGS.length];
+        for (int i = 0; i < SETTINGS.length; i++) {
+            String name = SETTINGS[i].name();
+            source[i] = switch (SETTINGS[i].kind()) {
+                case STRING -> settings.getString(name);
+                case BOOLEAN -> settings.getBoolean(name);
+                case INTEGER -> settings.getInteger(name);
+            };
+        }
+        return source;
+    }
+
+    /**
+     * Raw setting values from a map of setting names to values, e.g. {@link Extension#DEFAULTS}
+     */
+    static Object[] sourceOf(Map<String, Object> values) {
+        Object[] source = new Object[SETTINGS.length];
+        for (int i = 0; i < SETTINGS.length; i++) {
+            Object value = values.get(SETTINGS[i].name());
+            source[i] = value instanceof HighlightColor color ? color.name() : value;
+        }
+        return source;
+    }
+
+    /**
+     * Path of the rules file configured in these raw setting values, or null if none
+     */
+    static String rulesFilePath(Object[] source) {
+        String path = (String) value(source, Extension.RULES_FILE_SETTING);
+        return path == null || path.isBlank() ? null : path.strip();
+    }
+
+    /**
+     * Whether this snapshot was compiled from exactly these raw setting values and rules file
+     */
+    boolean isCompiledFrom(Object[] otherSource, RulesFile otherRulesFile) {
+        return Arrays.equals(source, otherSource) && rulesFile.equals(otherRulesFile);
+    }
+
+    /**
+     * Look up the response color for a precomputed status class, method id and MIME family
+     */
+    public HighlightColor responseColor(int statusClass, int methodId, int mimeFamily) {
+        return responseColors[index(statusClass, methodId, mimeFamily)];
+    }
+
+    /**
+     * Whether the color for this status class and method depends on the MIME family at all,
+     * so callers can skip content type detection when it cannot change the result
+     */
+    public boolean dependsOnMime(int statusClass, int methodId) {
+        return mimeSensitive[statusClass * ResponseFeatures.METHODS + methodId];
+    }
+
+    public boolean hasBodyRules() {
+        return !bodyMatcher.isEmpty() && bodyScanLimit > 0;
+    }
+
+    /**
+     * Find the highest-priority body rule matching the first bytes of a body, or {@link BytePatternMatcher#NO_MATCH}
+     */
+    public int matchBody(ByteArray body) {
+        return bodyMatcher.firstMatch(body, bodyScanLimit);
+    }
+
+    public int matchBody(byte[] body) {
+        return bodyMatcher.firstMatch(body, bodyScanLimit);
+    }
+
+    /**
+     * Number of bytes at the start of a body that body rules look at
+     */
+    public int bodyScanLimit() {
+        return bodyScanLimit;
+    }
+
+    /**
+     * Copy of the first bytes of a body that body rules, and MIME sniffing if {@code sniff} is set,
+     * look at, so they can run after the message is released
+     */
+    public byte[] copyScanWindow(ByteArray body, boolean sniff) {
+        int limit = hasBodyRules() ? bodyScanLimit : 0;
+        if (sniff) {
+            limit = Math.max(limit, ResponseFeatureExtractor.SNIFF_WINDOW);
+        }
+        int length = Math.min(body.length(), limit);
+        return length == 0 ? new byte[0] : body.subArray(0, length).getBytes();
+    }
+
+    /**
+     * Body size in bytes above which responses are classified from their headers alone,
+     * or {@link Long#MAX_VALUE} if every body may be read
+     */
+    public long headerOnlyAbove() {
+        return headerOnlyAbove;
+    }
+
+    public HighlightColor bodyRuleColor(int ruleId) {
+        return bodyRuleColors[ruleId];
+    }
+
+    public int bodyRuleCount() {
+        return bodyRulePatterns.length;
+    }
+
+    public String bodyRulePattern(int ruleId) {
+        return bodyRulePatterns[ruleId];
+    }
+
+    public boolean hasUrlRules() {
+        return !urlIndex.isEmpty();
+    }
+
+    /**
+     * Find the most specific URL rule for an absolute URL, or {@link UrlRuleIndex#NO_MATCH}
+     */
+    public int matchUrl(String url) {
+        return urlIndex.match(url);
+    }
+
+    public HighlightColor urlRuleColor(int ruleId) {
+        return urlRuleColors[ruleId];
+    }
+
+    public int urlRuleCount() {
+        return urlRulePatterns.length;
+    }
+
+    public String urlRulePattern(int ruleId) {
+        return urlRulePatterns[ruleId];
+    }
+
+    public HighlightColor websocketIncomingColor() {
+        return websocketIncoming;
+    }
+
+    public HighlightColor websocketOutgoingColor() {
+        return websocketOutgoing;
+    }
+
+    public boolean hasWebsocketTextRules() {
+        return websocketPrefixes.length > 0 || !websocketTextMatcher.isEmpty();
+    }
+
+    /**
+     * Color from the first matching text frame rule, or null. Anchored prefix rules are checked
+     * first since they only look at the start of the payload; the others only look at its
+     * first {@link Extension#WEBSOCKET_SCAN_WINDOW_SETTING} kilobytes.
+     */
+    public HighlightColor websocketTextRuleColor(String payload) {
+        for (int i = 0; i < websocketPrefixes.length; i++) {
+            if (payload.startsWith(websocketPrefixes[i])) {
+                return websocketPrefixColors[i];
+            }
+        }
+        int rule = websocketTextMatcher.firstMatch(payload, websocketScanLimit);
+        return rule == BytePatternMatcher.NO_MATCH ? null : websocketTextColors[rule];
+    }
+
+    public boolean hasWebsocketBinaryRules() {
+        return hasWebsocketBinaryRules;
+    }
+
+    /**
+     * Color configured for a binary frame's first byte, or null
+     */
+    public HighlightColor websocketOpcodeColor(int firstByte) {
+        return websocketOpcodeColors[firstByte & 0xFF];
+    }
+
+    /**
+     * Whether WebSocket frames are only highlighted when their shape was not seen before on the same socket
+     */
+    public boolean websocketNewShapesOnly() {
+        return websocketNewShapesOnly;
+    }
+
+    /**
+     * Number of message shapes each socket remembers before forgetting the oldest
+     */
+    public int websocketShapeMemory() {
+        return websocketShapeMemory;
+    }
+
+    /**
+     * Whether responses that deviate from their endpoint's baseline are highlighted
+     */
+    public boolean anomalyDetection() {
+        return anomalyDetection;
+    }
+
+    public HighlightColor anomalyColor() {
+        return anomalyColor;
+    }
+
+    /**
+     * How many standard deviations a body length may be from its endpoint's mean before it is anomalous
+     */
+    public int anomalyThreshold() {
+        return anomalyThreshold;
+    }
+
+    /**
+     * Number of endpoints whose statistics are kept before the least recently seen are forgotten
+     */
+    public int anomalyEndpoints() {
+        return anomalyEndpoints;
+    }
+
+    /**
+     * Whether responses are only highlighted the first time their endpoint is seen
+     */
+    public boolean firstSeenOnly() {
+        return firstSeenOnly;
+    }
+
+    /**
+     * Number of endpoints the first-seen filter is sized for
+     */
+    public int firstSeenCapacity() {
+        return firstSeenCapacity;
+    }
+
+    /**
+     * Probability that the first-seen filter takes a new endpoint for a known one
+     */
+    public double firstSeenFalsePositiveRate() {
+        return firstSeenFalsePositiveRate;
+    }
+
+    /**
+     * Whether the first-seen filter is stored in the project
+     */
+    public boolean firstSeenPersist() {
+        return firstSeenPersist;
+    }
+
+    /**
+     * Whether Intruder results are only highlighted when they stand out from the rest of their attack
+     */
+    public boolean intruderOutliers() {
+        return intruderOutliers;
+    }
+
+    public HighlightColor intruderOutlierColor() {
+        return intruderOutlierColor;
+    }
+
+    /**
+     * Whether only traffic in the project scope is colorized
+     */
+    public boolean inScopeOnly() {
+        return inScopeOnly;
+    }
+
+    /**
+     * Whether HTTP responses are queued for background classifiers instead of classified on the handler thread
+     */
+    public boolean backgroundClassification() {
+        return backgroundClassification;
+    }
+
+    /**
+     * Whether traffic from this tool should be colorized at all
+     */
+    public boolean toolEnabled(ToolType toolType) {
+        return toolEnabled[toolType.ordinal()];
+    }
+
+    public boolean logEnabled() {
+        return logEnabled;
+    }
+
+    public boolean debugMode() {
+        return debugMode;
+    }
+
+    private static int index(int statusClass, int methodId, int mimeFamily) {
+        return (statusClass * ResponseFeatures.METHODS + methodId) * ResponseFeatures.MIME_FAMILIES + mimeFamily;
+    }
+
+    private static Object value(Object[] source, String settingName) {
+        return source[POSITIONS.get(settingName)];
+    }
+
+    /**
+     * Setting values with the rules file's color overrides applied
+     */
+    private static Object[] withOverrides(Object[] source, RulesFile rulesFile) {
+        if (rulesFile.colors().isEmpty()) {
+            return source;
+        }
+        Object[] values = source.clone();
+        rulesFile.colors().forEach((settingName, color) -> values[POSITIONS.get(settingName)] = color);
+        return values;
+    }
+
+    private static void addFileRules(RulesFile rulesFile, RulesFile.Kind kind, List<String> patterns,
+                                     List<HighlightColor> colors, Logging logging) {
+        for (RulesFile.Rule rule : rulesFile.rules(kind)) {
+            HighlightColor color = parseColor(rule.color(), logging);
+            if (color != null) {
+                patterns.add(rule.pattern());
+                colors.add(color);
+            }
+        }
+    }
+
+    private static HighlightColor parseColor(Object[] source, String settingName, Logging logging) {
+        return parseColor((String) value(source, settingName), logging);
+    }
+
+    private static HighlightColor parseColor(String colorName, Logging logging) {
+        if (colorName != null) {
+            try {
+                return HighlightColor.valueOf(colorName.trim());
+            } catch (IllegalArgumentException e) {
+                logging.logToError("Invalid color name in settings: " + colorName);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse rules written as {@code pattern=COLOR} entries separated by {@code ;}.
+     * The last {@code =} separates the color, so patterns may contain {@code =} themselves.
+     */
+    private static void parseRules(String rules, List<String> patterns, List<HighlightColor> colors,
+                                       Logging logging) {
+        if (rules == null || rules.isBlank()) {
+            return;
+        }
+        for (String entry : rules.split(";")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                if (!entry.isBlank()) {
+                    logging.logToError("Invalid rule (expected pattern=COLOR): " + entry);
+                }
+                continue;
+            }
+            String pattern = entry.substring(0, separator).strip();
+            HighlightColor color = parseColor(entry.substring(separator + 1), logging);
+            if (!pattern.isEmpty() && color != null) {
+                patterns.add(pattern);
+                colors.add(color);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.ui.settings.SettingsPanelWithData;
+
+/**
+ * Holds the current {@link ColorRules} snapshot and republishes it when the settings or the
+ * rules file change. The settings panel has no change listener, so a background thread
+ * reads the raw values periodically and stops there unless one of them differs from the last
+ * read; the rules file is watched and reloaded on that same thread, and refreshes requested
+ * from the UI run there too. A new snapshot is only compiled when something is different, and
+ * is published with a single reference swap, so handlers never see a partly built rule set.
+ * A rules file that fails to load leaves the previous rules in place.
+ */
+public class ColorRulesProvider {
+    private static final long REFRESH_INTERVAL_MILLIS = 1000;
+
+    private final SettingsPanelWithData settings;
+    private final Logging logging;
+    private final AtomicReference<ColorRules> current;
+    private final ScheduledExecutorService refresher;
+
+    // Guarded by this
+    private String rulesFileSetting;
+    private Path rulesFilePath;
+    private RulesFile rulesFile = RulesFile.EMPTY;
+    private RulesFileWatcher watcher;
+
+    // Only used on the refresher thread once started: the raw values of the last poll
+    private Object[] polled;
+
+    public ColorRulesProvider(SettingsPanelWithData settings, Logging logging) {
+        this.settings = settings;
+        this.logging = logging;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Crayon settings refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Object[] source = ColorRules.readSource(settings);
+        synchronized (this) {
+            syncRulesFile(source);
+            this.current = new AtomicReference<>(ColorRules.compile(source, rulesFile, logging));
+        }
+        this.polled = source;
+        this.refresher.scheduleWithFixedDelay(this::poll,
+                REFRESH_INTERVAL_MILLIS, REFRESH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The snapshot to use for the message being processed. Never blocks.
+     */
+    public ColorRules current() {
+        return current.get();
+    }
+
+    /**
+     * Recompile the snapshot on the refresher thread if any of the settings or the rules file
+     * changed, e.g. right after a setting was changed from the UI. The returned future
+     * completes once the new snapshot is current.
+     */
+    public Future<?> refreshSoon() {
+        return refresher.submit(() -> refresh(ColorRules.readSource(settings)));
+    }
+
+    /**
+     * Periodic check: the raw values are compared with the previous poll's before anything else
+     */
+    private void poll() {
+        try {
+            Object[] source = ColorRules.readSource(settings);
+            if (!Arrays.equals(source, polled)) {
+                polled = source;
+                refresh(source);
+            }
+        } catch (Exception e) {
+            logging.logToError("Crayon: Failed to refresh settings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recompile the snapshot if these settings or the rules file differ from what it was compiled from
+     */
+    private synchronized void refresh(Object[] source) {
+        try {
+            syncRulesFile(source);
+            if (!current.get().isCompiledFrom(source, rulesFile)) {
+                current.set(ColorRules.compile(source, rulesFile, logging));
+            }
+        } catch (Exception e) {
+            logging.logToError("Crayon: Failed to refresh settings: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        refresher.shutdownNow();
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Start watching a different rules file when the configured path changes
+     */
+    private void syncRulesFile(Object[] source) {
+        String setting = ColorRules.rulesFilePath(source);
+        if (Objects.equals(setting, rulesFileSetting)) {
+            return;
+        }
+        rulesFileSetting = setting;
+        Path path = toPath(setting);
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        rulesFilePath = path;
+        rulesFile = RulesFile.EMPTY;
+        if (path == null) {
+            return;
+        }
+        reloadRulesFile();
+        try {
+            watcher = new RulesFileWatcher(path, () -> refresher.execute(this::onRulesFileChanged));
+        } catch (IOException | RuntimeException e) {
+            logging.logToError("Crayon: Cannot watch rules file " + path + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void onRulesFileChanged() {
+        if (rulesFilePath != null) {
+            reloadRulesFile();
+            refresh(ColorRules.readSource(settings));
+        }
+    }
+
+    private void reloadRulesFile() {
+        try {
+            rulesFile = RulesFile.load(rulesFilePath);
+            logging.logToOutput("Crayon: Loaded " + rulesFile.rules().size() + " rule(s) from " + rulesFilePath);
+        } catch (IOException e) {
+            logging.logToError("Crayon: Failed to load rules file " + rulesFilePath + ": " + e.getMessage());
+        }
+    }
+
+    private Path toPath(String path) {
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Path.of(path);
+        } catch (InvalidPathException e) {
+            logging.logToError("Crayon: Invalid rules file path: " + path);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Allocation-free Content-Type parser. It reads the media type in place (ignoring case,
+ * surrounding whitespace and parameters) and maps it to one of the {@code ResponseFeatures.MIME_*}
+ * families. Types that say nothing reliable about the body are flagged as ambiguous so the
+ * caller knows when Burp's body-sniffing MIME inference is worth asking for.
+ */
+public final class ContentTypeMatcher {
+    /**
+     * Set on results where the header is absent or too generic to trust on its own
+     */
+    public static final int AMBIGUOUS = 0x10;
+    public static final int FAMILY_MASK = 0x0F;
+
+    private ContentTypeMatcher() {
+    }
+
+    /**
+     * Parse a Content-Type header value; returns a MIME family, possibly combined with {@link #AMBIGUOUS}
+     */
+    public static int match(String contentType) {
+        if (contentType == null) {
+            return ResponseFeatures.MIME_NONE | AMBIGUOUS;
+        }
+
+        int length = contentType.length();
+        int typeStart = skipWhitespace(contentType, 0, length);
+        int slash = -1;
+        int end = typeStart;
+        while (end < length) {
+            char c = contentType.charAt(end);
+            if (c == ';' || c == ',' || c == ' ' || c == '\t') {
+                break;
+            }
+            if (c == '/' && slash < 0) {
+                slash = end;
+            }
+            end++;
+        }
+        if (slash < 0 || end == typeStart) {
+            return ResponseFeatures.MIME_NONE | AMBIGUOUS;
+        }
+
+        int typeLength = slash - typeStart;
+        int subtypeStart = slash + 1;
+        int subtypeLength = end - subtypeStart;
+
+        // Structured syntax suffixes (RFC 6839) first: application/problem+json, image/svg+xml, ...
+        if (endsWith(contentType, subtypeStart, subtypeLength, "+json")) {
+            return ResponseFeatures.MIME_JSON;
+        }
+        if (equals(contentType, subtypeStart, subtypeLength, "xhtml+xml")) {
+            return ResponseFeatures.MIME_XHTML;
+        }
+        if (endsWith(contentType, subtypeStart, subtypeLength, "+xml")) {
+            return ResponseFeatures.MIME_XML;
+        }
+
+        if (equals(contentType, subtypeStart, subtypeLength, "json")
+                || equals(contentType, subtypeStart, subtypeLength, "x-json")) {
+            return ResponseFeatures.MIME_JSON;
+        }
+        if (equals(contentType, subtypeStart, subtypeLength, "html")) {
+            return ResponseFeatures.MIME_HTML;
+        }
+        if (equals(contentType, subtypeStart, subtypeLength, "xml")) {
+            return ResponseFeatures.MIME_XML;
+        }
+
+        if (equals(contentType, typeStart, typeLength, "text")
+                && equals(contentType, subtypeStart, subtypeLength, "plain")) {
+            // Frequently used for JSON and HTML bodies, so let the inferred type refine it
+            return ResponseFeatures.MIME_TEXT | AMBIGUOUS;
+        }
+        if (equals(contentType, subtypeStart, subtypeLength, "octet-stream")
+                || equals(contentType, subtypeStart, subtypeLength, "*")
+                || equals(contentType, subtypeStart, subtypeLength, "unknown")) {
+            return ResponseFeatures.MIME_NONE | AMBIGUOUS;
+        }
+
+        // Anything else (images, scripts, stylesheets, fonts, ...) is taken at face value
+        return ResponseFeatures.MIME_NONE;
+    }
+
+    public static boolean isAmbiguous(int match) {
+        return (match & AMBIGUOUS) != 0;
+    }
+
+    public static int family(int match) {
+        return match & FAMILY_MASK;
+    }
+
+    private static int skipWhitespace(String value, int from, int to) {
+        while (from < to && (value.charAt(from) == ' ' || value.charAt(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean equals(String value, int offset, int length, String expected) {
+        return length == expected.length() && value.regionMatches(true, offset, expected, 0, length);
+    }
+
+    private static boolean endsWith(String value, int offset, int length, String suffix) {
+        return length > suffix.length()
+                && value.regionMatches(true, offset + length - suffix.length(), suffix, 0, suffix.length());
+    }
+}
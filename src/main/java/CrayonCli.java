@@ -0,0 +1,204 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.logging.Logging;
+
+/**
+ * Command-line classifier for HAR captures, using the same rules as the extension.
+ * Entries are streamed in, classified in parallel and written out in their original order.
+ * Only a bounded window of entries is in flight, so memory stays flat whatever the input size.
+ *
+ * <pre>
+ * java -cp Crayon.jar:montoya-api.jar CrayonCli [--format har|csv] [--rules rules.json]
+ *         [--threads N] [--output FILE] INPUT.har
+ * </pre>
+ *
+ * HAR output adds {@code _highlight} (the color name) and a {@code comment} explaining the
+ * color to each colored entry. CSV output has one {@code url,method,status,color,reason} line
+ * per entry. Use {@code -} for standard input or output.
+ */
+public final class CrayonCli {
+    private static final int WINDOW_PER_THREAD = 64;
+
+    private enum Format {
+        HAR,
+        CSV
+    }
+
+    private final ColorRules rules;
+    private final Format format;
+
+    private CrayonCli(ColorRules rules, Format format) {
+        this.rules = rules;
+        this.format = format;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Format format = Format.HAR;
+        String rulesFile = null;
+        String input = null;
+        String output = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format" -> format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    case "--rules" -> rulesFile = args[++i];
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--output" -> output = args[++i];
+                    default -> input = args[i];
+                }
+            }
+        } catch (RuntimeException e) {
+            input = null;
+        }
+        if (input == null) {
+            System.err.println("Usage: CrayonCli [--format har|csv] [--rules rules.json] [--threads N] "
+                    + "[--output FILE] INPUT.har");
+            System.exit(2);
+        }
+
+        Logging logging = stderrLogging();
+        RulesFile loaded = rulesFile == null ? RulesFile.EMPTY : RulesFile.load(Path.of(rulesFile));
+        ColorRules rules = ColorRules.compile(ColorRules.sourceOf(Extension.DEFAULTS), loaded, logging);
+        CrayonCli cli = new CrayonCli(rules, format);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try (Reader in = input.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Path.of(input), StandardCharsets.UTF_8);
+             Writer out = output.equals("-")
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Path.of(output), StandardCharsets.UTF_8)) {
+            long entries = cli.run(new HarReader(in), out, workers, threads * WINDOW_PER_THREAD);
+            System.err.println("Crayon: classified " + entries + " entries");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Classify every entry and write the results in input order. At most {@code window}
+     * entries are held at once: reading waits for the oldest result when the window is full.
+     */
+    long run(HarReader reader, Writer out, ExecutorService workers, int window) throws IOException {
+        ArrayDeque<CompletableFuture<String>> inFlight = new ArrayDeque<>(window);
+        long count = 0;
+        HarEntry entry = reader.next();
+        writeHeader(reader.logFields(), out);
+        while (entry != null) {
+            HarEntry current = entry;
+            boolean first = count == 0;
+            inFlight.add(CompletableFuture.supplyAsync(() -> render(current, first), workers));
+            if (inFlight.size() >= window) {
+                out.write(inFlight.poll().join());
+            }
+            count++;
+            entry = reader.next();
+        }
+        while (!inFlight.isEmpty()) {
+            out.write(inFlight.poll().join());
+        }
+        writeFooter(reader.trailingLogFields(), out);
+        return count;
+    }
+
+    private String render(HarEntry entry, boolean first) {
+        ResponseFeatures features = ResponseFeatureExtractor.extract(rules, entry);
+        HighlightColor color = entry.status() > 0 ? ResponseClassifier.classify(rules, features) : null;
+        String reason = color == null ? "" : reason(features);
+        try {
+            StringBuilder line = new StringBuilder(256);
+            if (format == Format.CSV) {
+                csv(entry.url(), line).append(',');
+                csv(entry.method(), line).append(',');
+                line.append(entry.status()).append(',');
+                line.append(color == null ? "" : color.name()).append(',');
+                csv(reason, line).append('\n');
+            } else {
+                Map<String, Object> json = entry.json();
+                if (color != null) {
+                    json.put("_highlight", color.name());
+                    json.put("comment", "Crayon: " + reason);
+                }
+                line.append(first ? "\n" : ",\n");
+                JsonWriter.write(json, line);
+            }
+            return line.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String reason(ResponseFeatures features) {
+        if (features.bodyRuleId() != BytePatternMatcher.NO_MATCH) {
+            return "body rule " + rules.bodyRulePattern(features.bodyRuleId());
+        } else if (features.urlRuleId() != UrlRuleIndex.NO_MATCH) {
+            return "URL rule " + rules.urlRulePattern(features.urlRuleId());
+        }
+        return "status " + features.statusCode();
+    }
+
+    private void writeHeader(Map<String, Object> logFields, Writer out) throws IOException {
+        if (format == Format.CSV) {
+            out.write("url,method,status,color,reason\n");
+            return;
+        }
+        out.write("{\"log\":{");
+        for (Map.Entry<String, Object> field : logFields.entrySet()) {
+            JsonWriter.quote(field.getKey(), out);
+            out.write(':');
+            JsonWriter.write(field.getValue(), out);
+            out.write(',');
+        }
+        out.write("\"entries\":[");
+    }
+
+    private void writeFooter(Map<String, Object> trailingLogFields, Writer out) throws IOException {
+        if (format == Format.CSV) {
+            return;
+        }
+        out.write("\n]");
+        for (Map.Entry<String, Object> field : trailingLogFields.entrySet()) {
+            out.write(',');
+            JsonWriter.quote(field.getKey(), out);
+            out.write(':');
+            JsonWriter.write(field.getValue(), out);
+        }
+        out.write("}}\n");
+    }
+
+    private static StringBuilder csv(String value, StringBuilder out) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return out.append(value);
+        }
+        return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static Logging stderrLogging() {
+        // Only the logging calls made while compiling rules are needed outside Burp
+        return (Logging) Proxy.newProxyInstance(CrayonCli.class.getClassLoader(), new Class<?>[]{Logging.class},
+                (proxy, method, args) -> {
+                    if (args != null && args.length > 0 && args[0] instanceof String message) {
+                        System.err.println(message);
+                    }
+                    return null;
+                });
+    }
+}
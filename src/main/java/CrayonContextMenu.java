@@ -1,13 +1,18 @@
 import java.awt.Component;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.swing.JMenuItem;
 
 import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.core.Annotations;
 import burp.api.montoya.core.HighlightColor;
 import burp.api.montoya.http.message.HttpRequestResponse;
-import burp.api.montoya.logging.Logging;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.sitemap.SiteMap;
 import burp.api.montoya.sitemap.SiteMapFilter;
 import burp.api.montoya.ui.contextmenu.ContextMenuEvent;
@@ -19,134 +24,69 @@ import burp.api.montoya.ui.settings.SettingsPanelWithData;
 public class CrayonContextMenu implements ContextMenuItemsProvider {
     private final MontoyaApi api;
     private final SettingsPanelWithData settings;
-    private final Logging logging;
+    private final ColorRulesProvider rules;
+    private final BulkRunner bulkRunner;
+    private final CrayonLog log;
+    private final HighlightJournal journal;
 
-    public CrayonContextMenu(MontoyaApi api, SettingsPanelWithData settings) {
+    public CrayonContextMenu(MontoyaApi api, SettingsPanelWithData settings, ColorRulesProvider rules,
+                             BulkRunner bulkRunner, CrayonLog log, HighlightJournal journal) {
         this.api = api;
         this.settings = settings;
-        this.logging = api.logging();
+        this.rules = rules;
+        this.bulkRunner = bulkRunner;
+        this.log = log;
+        this.journal = journal;
     }
 
+    /**
+     * Build the menu. Only the selection's size and first item are looked at, so opening the
+     * menu costs the same for one row as for 100k; the work happens when an action is chosen.
+     */
     @Override
     public List<Component> provideMenuItems(ContextMenuEvent event) {
         try {
-            // CRITICAL DEBUG: Log that we were called at all
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon Context Menu: PROVIDER CALLED - method invoked");
-            }
-            
-            // Log detailed invocation information for debugging
-            logInvocationDetails(event);
-
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon Context Menu: Invoked from " + event.invocationType());
-            }
-
-            List<Component> menuItems = new ArrayList<>();
-
-            // Detect selected items with multiple fallback methods
-            List<HttpRequestResponse> selectedItems = detectSelectedItems(event);
-
-            // Log the detection results
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon Context Menu: Final selected items count: " + selectedItems.size());
-            }
-
-            // Always create menu items, even if no items selected
-            // This ensures context menu appears in all contexts
-            String contextUrl = null;
-            if (selectedItems.isEmpty()) {
-                contextUrl = extractUrlFromContext(event);
-                if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                    logging.logToOutput("Crayon Context Menu: No items selected, extracted URL: " + contextUrl);
-                }
-            }
+            List<HttpRequestResponse> items = selection(event);
+            String fallbackUrl = items.isEmpty() ? editorUrl(event) : null;
 
-            // CRITICAL FIX: Always return a menu, never return null or empty list
-            // Burp expects either a non-empty List<Component> or null
-            // We'll return an empty list if we can't create meaningful items, but let's try to create at least one item
-
-            final List<HttpRequestResponse> items = selectedItems;
-            final String fallbackUrl = contextUrl;
-            
-            // Enhanced invocation type detection
             boolean isSiteMap = event.isFrom(InvocationType.SITE_MAP_TREE, InvocationType.SITE_MAP_TABLE);
             boolean isProxy = event.isFrom(InvocationType.PROXY_HISTORY);
             boolean isIntruder = event.isFrom(InvocationType.INTRUDER_ATTACK_RESULTS);
             boolean isMessageEditor = event.isFrom(InvocationType.MESSAGE_EDITOR_REQUEST, InvocationType.MESSAGE_EDITOR_RESPONSE);
-            
-            // CRITICAL FIX: Logger detection - Logger often doesn't have specific invocation types
-            // We'll detect it by checking if it's NOT any of the other known tools
-            boolean isLogger = false;
-            if (!isSiteMap && !isProxy && !isIntruder && !isMessageEditor) {
-                // Additional check: if we have items but no specific tool detected, it's likely Logger
-                isLogger = !items.isEmpty() || fallbackUrl != null;
-                if (isLogger && settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                    logging.logToOutput("Crayon Context Menu: Detected Logger context (inferred)");
-                }
-            }
-            
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon Context Menu: isSiteMap=" + isSiteMap + ", isProxy=" + isProxy + ", isIntruder=" + isIntruder + ", isMessageEditor=" + isMessageEditor + ", isLogger=" + isLogger);
-            }
+            // Logger has no invocation type of its own, so it is inferred when no other tool matches
+            boolean isLogger = !isSiteMap && !isProxy && !isIntruder && !isMessageEditor
+                    && (!items.isEmpty() || fallbackUrl != null);
+            log.debug(() -> "Crayon Context Menu: " + event.invocationType() + ", " + items.size()
+                    + " selected item(s), logger=" + isLogger);
 
-            // Create main submenu
             javax.swing.JMenu crayonMenu = new javax.swing.JMenu("Crayon");
-            menuItems.add(crayonMenu);
-
-            // Determine best context for labels and actions
             JMenuItem highlightItem = new JMenuItem("Highlight");
             JMenuItem clearItem = new JMenuItem("Clear");
 
             if (!items.isEmpty()) {
-                // Scenario A: Explicit Selection
+                // Scenario A: Explicit selection, processed as a background job however large it is
                 highlightItem.setText("Highlight selected (" + items.size() + " items)");
-                highlightItem.addActionListener(e -> {
-                    int count = 0;
-                    for (HttpRequestResponse item : items) {
-                        if (applyAutoHighlight(item)) count++;
-                    }
-                    if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                        logging.logToOutput("Crayon: Highlighted " + count + " selected items");
-                    }
-                });
+                highlightItem.addActionListener(e -> recolor(
+                        "Auto-highlight " + items.size() + " selected item(s)", () -> items, this::applyAutoHighlight));
 
                 clearItem.setText("Remove highlights (" + items.size() + " items)");
-                clearItem.addActionListener(e -> {
-                    for (HttpRequestResponse item : items) {
-                        item.annotations().setHighlightColor(HighlightColor.NONE);
-                    }
-                });
-            } else if (isSiteMap && (fallbackUrl != null || !items.isEmpty())) {
-                // Scenario B: SiteMap Folder (Prefix)
+                clearItem.addActionListener(e -> recolor(
+                        "Remove highlights from " + items.size() + " selected item(s)", () -> items,
+                        (item, batch) -> batch.recolor(item.annotations(), HighlightColor.NONE)));
+            } else if (isSiteMap && fallbackUrl != null) {
+                // Scenario B: SiteMap folder without a selected item
                 highlightItem.setText("Highlight folder rules (Recursive)");
-                highlightItem.addActionListener(e -> {
-                    if (!items.isEmpty()) {
-                        applyColorToUrlPrefix(items.get(0), true);
-                    } else if (fallbackUrl != null) {
-                        // We need an item to get the URL prefix logic working
-                        // If items is empty but we have fallbackUrl, we log it for now
-                        logging.logToOutput("Crayon: Sitemap folder highlight requested for: " + fallbackUrl);
-                    }
-                });
+                highlightItem.addActionListener(e -> applyColorToUrlPrefix(fallbackUrl, true));
 
                 clearItem.setText("Remove folder highlights");
-                clearItem.addActionListener(e -> {
-                    if (!items.isEmpty()) {
-                        applyColorToUrlPrefix(items.get(0), false);
-                    }
-                });
+                clearItem.addActionListener(e -> applyColorToUrlPrefix(fallbackUrl, false));
             } else if (isLogger) {
                 // Scenario C: Logger/Generic view
-                highlightItem.setText("Highlight all in view (rules)");
-                highlightItem.addActionListener(e -> applyAutoHighlightToLoggerItems());
+                highlightItem.setText("Highlight all Proxy history (rules)");
+                highlightItem.addActionListener(e -> applyAutoHighlightToProxyHistory(false, null));
 
                 clearItem.setText("Remove all highlights in view");
-                clearItem.addActionListener(e -> {
-                    if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                        logging.logToOutput("Crayon: Clear all highlights in view requested");
-                    }
-                });
+                clearItem.setEnabled(false);
             } else {
                 // Scenario D: No selection/Unknown
                 highlightItem.setText("Highlight (No items selected)");
@@ -155,337 +95,253 @@ public class CrayonContextMenu implements ContextMenuItemsProvider {
                 clearItem.setEnabled(false);
             }
 
+            String contextUrl = items.isEmpty() ? fallbackUrl : items.get(0).request().url();
             crayonMenu.add(highlightItem);
             crayonMenu.add(clearItem);
-
-            // CRITICAL FIX: Never return null, always return a list (even if empty)
-            // This prevents Burp from thinking the extension failed to provide menu items
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon Context Menu: Returning " + menuItems.size() + " menu items");
-                for (Component item : menuItems) {
-                    if (item instanceof JMenuItem) {
-                        logging.logToOutput("Crayon Context Menu: Menu item - " + ((JMenuItem) item).getText());
-                    }
-                }
+            if (isSiteMap && contextUrl != null) {
+                crayonMenu.add(createFolderColorMenu(contextUrl));
             }
-            
-            return menuItems;
+            crayonMenu.addSeparator();
+            crayonMenu.add(createProxyHistoryMenu(contextUrl));
+            crayonMenu.addSeparator();
+            crayonMenu.add(createUndoItem());
+            crayonMenu.add(createRedoItem());
+
+            // Burp expects a list, never null, or it may suppress the menu
+            return List.of(crayonMenu);
         } catch (Exception e) {
-            logging.logToError("Crayon Context Menu Error: " + e.getMessage());
-            for (StackTraceElement element : e.getStackTrace()) {
-                logging.logToError("  at " + element.toString());
-            }
-            // CRITICAL FIX: Return empty list instead of null on error
-            // This ensures Burp doesn't suppress the context menu entirely
+            log.error("Crayon Context Menu Error: " + e);
             return new ArrayList<>();
         }
     }
 
     /**
-     * Apply highlighting rules to all visible items in Logger
+     * Create the submenu that re-highlights the Proxy HTTP history, optionally narrowed
+     * to the project scope or to the host of the item the menu was opened on
      */
-    private void applyAutoHighlightToLoggerItems() {
-        // This is a placeholder for Logger-specific highlighting
-        // In a real implementation, you would need to access the Logger's visible items
-        // through the Burp API. For now, log that this feature was requested.
-        if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-            logging.logToOutput("Crayon: Logger-specific highlighting requested (feature placeholder)");
+    private javax.swing.JMenu createProxyHistoryMenu(String contextUrl) {
+        javax.swing.JMenu historyMenu = new javax.swing.JMenu("Highlight Proxy history (rules)");
+
+        JMenuItem allItem = new JMenuItem("All items");
+        allItem.addActionListener(e -> applyAutoHighlightToProxyHistory(false, null));
+        historyMenu.add(allItem);
+
+        JMenuItem inScopeItem = new JMenuItem("In-scope items");
+        inScopeItem.addActionListener(e -> applyAutoHighlightToProxyHistory(true, null));
+        historyMenu.add(inScopeItem);
+
+        String host = getHost(contextUrl);
+        if (host != null) {
+            JMenuItem hostItem = new JMenuItem("Items for " + host);
+            hostItem.addActionListener(e -> applyAutoHighlightToProxyHistory(false, host));
+            historyMenu.add(hostItem);
         }
+        return historyMenu;
     }
 
-    private void applyColorToUrlPrefix(HttpRequestResponse item, boolean applyRules) {
-        String url = item.request().url();
-        String prefix = getUrlPrefix(url);
-        
-        SiteMap siteMap = api.siteMap();
-        List<HttpRequestResponse> matchingItems = siteMap.requestResponses(
-            SiteMapFilter.prefixFilter(prefix)
-        );
-
-        int count = 0;
-        for (HttpRequestResponse matchingItem : matchingItems) {
-            if (applyRules) {
-                if (applyAutoHighlight(matchingItem)) {
-                    count++;
-                }
-            } else {
-                matchingItem.annotations().setHighlightColor(HighlightColor.NONE);
-                count++;
-            }
-        }
-
-        if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-            String action = applyRules ? "Auto-highlighted" : "Removed highlights from";
-            logging.logToOutput("Crayon: " + action + " " + count + " item(s) with prefix: " + prefix);
-        }
-    }
-
-    private String getUrlPrefix(String url) {
-        int queryStart = url.indexOf('?');
-        String pathPart = queryStart > 0 ? url.substring(0, queryStart) : url;
-        int lastSlash = pathPart.lastIndexOf('/');
-        if (lastSlash > 0) {
-            return pathPart.substring(0, lastSlash + 1);
-        }
-        return pathPart;
+    /**
+     * Re-apply the highlighting rules to the whole Proxy HTTP history.
+     * Items are classified in parallel chunks by the bulk runner, which reports items/s when done.
+     */
+    private void applyAutoHighlightToProxyHistory(boolean inScopeOnly, String host) {
+        String title = "Auto-highlight Proxy history"
+                + (inScopeOnly ? " (in scope)" : "")
+                + (host != null ? " for " + host : "");
+        recolor(title,
+                () -> api.proxy().history(),
+                (item, batch) -> {
+                    if (!item.hasResponse()) {
+                        return false;
+                    }
+                    HttpRequest request = item.finalRequest();
+                    if (host != null && !host.equalsIgnoreCase(request.httpService().host())) {
+                        return false;
+                    }
+                    if (inScopeOnly && !request.isInScope()) {
+                        return false;
+                    }
+                    return applyAutoHighlight(request, item.response(), item.annotations(), batch);
+                });
     }
 
     /**
-     * Detect selected items with multiple fallback methods to ensure
-     * compatibility across all Burp Suite tools (Sitemap, Logger, Proxy, etc.)
-     * CRITICAL FIX: More aggressive detection for Sitemap and Logger
+     * Create the submenu that pins a color to a site map folder. The color is stored as a
+     * URL rule, so the same index colors future traffic and the existing folder items.
      */
-    private List<HttpRequestResponse> detectSelectedItems(ContextMenuEvent event) {
-        List<HttpRequestResponse> selectedItems = new ArrayList<>();
-        
-        // Method 1: Primary selection from event.selectedRequestResponses()
-        // CRITICAL: This is the main method that should work for Sitemap and Logger
-        if (event.selectedRequestResponses() != null) {
-            selectedItems.addAll(event.selectedRequestResponses());
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon: Found " + event.selectedRequestResponses().size() + " items from selectedRequestResponses()");
-            }
-        }
-        
-        // Method 2: Message editor (for right-click in editor)
-        if (selectedItems.isEmpty() && event.messageEditorRequestResponse().isPresent()) {
-            selectedItems.add(event.messageEditorRequestResponse().get().requestResponse());
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon: Found 1 item from messageEditorRequestResponse()");
-            }
-        }
-        
-        // CRITICAL FIX: For Sitemap and Logger, sometimes the selection is not properly detected
-        // Let's try to work with whatever we can get from the context
-        if (selectedItems.isEmpty()) {
-            if (settings.getBoolean(Extension.DEBUG_MODE_SETTING)) {
-                logging.logToOutput("Crayon: No items detected, but continuing to create menu anyway");
+    private javax.swing.JMenu createFolderColorMenu(String url) {
+        javax.swing.JMenu folderMenu = new javax.swing.JMenu("Set folder color (adds URL rule)");
+        for (HighlightColor color : HighlightColor.values()) {
+            if (color == HighlightColor.NONE) {
+                continue;
             }
-            // Don't return empty here - let the menu creation proceed
-            // The menu will be created with fallback options
+            JMenuItem colorItem = new JMenuItem(color.displayName());
+            colorItem.addActionListener(e -> applyUrlRuleToPrefix(url, color));
+            folderMenu.add(colorItem);
         }
-        
-        return selectedItems;
+        return folderMenu;
     }
 
     /**
-     * Extract URL from context when individual items aren't directly accessible
+     * Add a {@code host/folder/*} URL rule for the folder containing the URL and re-apply
+     * the rules to the folder's site map items
      */
-    private String extractUrlFromContext(ContextMenuEvent event) {
-        try {
-            // Try to get URL from message editor
-            if (event.messageEditorRequestResponse().isPresent()) {
-                HttpRequestResponse requestResponse = event.messageEditorRequestResponse().get().requestResponse();
-                if (requestResponse != null && requestResponse.request() != null) {
-                    String url = requestResponse.request().url();
-                    if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                        logging.logToOutput("Crayon: Extracted URL from message editor: " + url);
-                    }
-                    return url;
-                }
-            }
-            
-            // Log that URL extraction failed
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon: Unable to extract URL from context");
-            }
-            
-        } catch (Exception e) {
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon: Error extracting URL from context: " + e.getMessage());
-            }
+    private void applyUrlRuleToPrefix(String url, HighlightColor color) {
+        String prefix = UrlParts.folderPrefix(url);
+        int hostStart = UrlParts.hostStart(prefix);
+        String pattern = prefix.substring(hostStart, UrlParts.hostEnd(prefix, hostStart))
+                + prefix.substring(UrlParts.pathStart(prefix, hostStart)) + "*";
+        if (!pattern.contains("/")) {
+            pattern = pattern.replace("*", "/*");
         }
-        
-        return null;
+
+        String existing = settings.getString(Extension.URL_RULES_SETTING);
+        String rule = pattern + "=" + color.name();
+        settings.setString(Extension.URL_RULES_SETTING,
+                existing == null || existing.isBlank() ? rule : existing.strip() + "; " + rule);
+        // Compiled off the UI thread; the job waits for the new rule before loading the items
+        Future<?> refreshed = rules.refreshSoon();
+
+        SiteMap siteMap = api.siteMap();
+        recolor("Apply URL rule " + rule,
+                () -> {
+                    refreshed.get();
+                    return siteMap.requestResponses(SiteMapFilter.prefixFilter(prefix));
+                },
+                this::applyAutoHighlight);
     }
 
     /**
-     * Log detailed invocation information for debugging
+     * Apply rules to (or clear) every site map item under the item's folder.
+     * Runs as a background job so large site maps don't freeze the UI.
      */
-    private void logInvocationDetails(ContextMenuEvent event) {
-        if (!settings.getBoolean(Extension.DEBUG_MODE_SETTING)) {
-            return;
-        }
-        
-        try {
-            logging.logToOutput("=== Crayon Context Menu Debug ===");
-            logging.logToOutput("Invocation Type: " + event.invocationType());
-            logging.logToOutput("Message Editor Present: " + event.messageEditorRequestResponse().isPresent());
-            
-            // CRITICAL DEBUG: Check what selection methods are available
-            logging.logToOutput("selectedRequestResponses() available: " + (event.selectedRequestResponses() != null));
-            if (event.selectedRequestResponses() != null) {
-                logging.logToOutput("selectedRequestResponses() size: " + event.selectedRequestResponses().size());
-            }
-            
-            // Log selected request/response details
-            if (event.selectedRequestResponses() != null) {
-                logging.logToOutput("Selected Items Count: " + event.selectedRequestResponses().size());
-                if (!event.selectedRequestResponses().isEmpty()) {
-                    HttpRequestResponse firstItem = event.selectedRequestResponses().get(0);
-                    if (firstItem != null && firstItem.request() != null) {
-                        logging.logToOutput("First Item Method: " + firstItem.request().method());
-                        logging.logToOutput("First Item URL: " + firstItem.request().url());
+    private void applyColorToUrlPrefix(String url, boolean applyRules) {
+        String prefix = UrlParts.folderPrefix(url);
+        SiteMap siteMap = api.siteMap();
+
+        String title = (applyRules ? "Auto-highlight " : "Remove highlights from ") + prefix;
+        recolor(title,
+                () -> siteMap.requestResponses(SiteMapFilter.prefixFilter(prefix)),
+                (matchingItem, batch) -> {
+                    if (applyRules) {
+                        return applyAutoHighlight(matchingItem, batch);
                     }
-                }
-            }
-            
-            // Log invocation type details
-            String invocationType = detectInvocationType(event);
-            logging.logToOutput("Detected Invocation Types: " + invocationType);
-            
-            // CRITICAL DEBUG: Check if this is sitemap or logger
-            boolean isSiteMapTree = event.isFrom(InvocationType.SITE_MAP_TREE);
-            boolean isSiteMapTable = event.isFrom(InvocationType.SITE_MAP_TABLE);
-            logging.logToOutput("Is SiteMap Tree: " + isSiteMapTree);
-            logging.logToOutput("Is SiteMap Table: " + isSiteMapTable);
-            
-        } catch (Exception e) {
-            logging.logToError("Crayon: Error logging invocation details: " + e.getMessage());
-        }
+                    return batch.recolor(matchingItem.annotations(), HighlightColor.NONE);
+                });
     }
 
     /**
-     * Detect all possible invocation types for debugging
+     * Work done for each item of a recorded bulk operation; returns true if the item was changed
      */
-    private String detectInvocationType(ContextMenuEvent event) {
-        List<String> types = new ArrayList<>();
-        
-        if (event.isFrom(InvocationType.SITE_MAP_TREE)) types.add("SITE_MAP_TREE");
-        if (event.isFrom(InvocationType.SITE_MAP_TABLE)) types.add("SITE_MAP_TABLE");
-        if (event.isFrom(InvocationType.PROXY_HISTORY)) types.add("PROXY_HISTORY");
-        if (event.isFrom(InvocationType.MESSAGE_EDITOR_REQUEST)) types.add("MESSAGE_EDITOR_REQUEST");
-        if (event.isFrom(InvocationType.MESSAGE_EDITOR_RESPONSE)) types.add("MESSAGE_EDITOR_RESPONSE");
-        if (event.isFrom(InvocationType.INTRUDER_ATTACK_RESULTS)) types.add("INTRUDER_ATTACK_RESULTS");
-        // Note: Logger invocation types are not explicitly defined in the API
-        // They may be detected by process of elimination
-        if (event.isFrom(InvocationType.SEARCH_RESULTS)) types.add("SEARCH_RESULTS");
-        
-        return types.isEmpty() ? "UNKNOWN" : String.join(", ", types);
+    private interface RecolorAction<T> {
+        boolean apply(T item, HighlightJournal.Batch batch);
     }
 
     /**
-     * Create auto-highlight menu item
+     * Run a bulk operation whose color changes are recorded, so it can be undone
      */
-    private JMenuItem createAutoHighlightItem(List<HttpRequestResponse> items) {
-        JMenuItem autoHighlight = new JMenuItem("Crayon: Highlight (apply rules)");
-        autoHighlight.addActionListener(e -> {
-            int count = 0;
-            for (HttpRequestResponse item : items) {
-                if (applyAutoHighlight(item)) {
-                    count++;
-                }
+    private <T> void recolor(String title, Callable<List<T>> loader, RecolorAction<T> action) {
+        HighlightJournal.Batch batch = journal.begin(title);
+        bulkRunner.start(title, loader, item -> action.apply(item, batch), () -> {
+            if (!journal.commit(batch)) {
+                log.error("Crayon: " + title + " changed too many items to be undone");
+            }
+        });
+    }
+
+    private JMenuItem createUndoItem() {
+        HighlightJournal.Batch batch = journal.peekUndo();
+        JMenuItem undoItem = new JMenuItem(batch == null ? "Undo" : "Undo: " + batch.title());
+        undoItem.setEnabled(batch != null);
+        undoItem.addActionListener(e -> {
+            HighlightJournal.Batch undone = journal.undo();
+            if (undone != null) {
+                bulkRunner.start("Undo " + undone.title(), undone::indexes, undone::revert,
+                        () -> journal.reverted(undone));
             }
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon: Auto-highlighted " + count + " of " + items.size() + " item(s)");
+        });
+        return undoItem;
+    }
+
+    private JMenuItem createRedoItem() {
+        HighlightJournal.Batch batch = journal.peekRedo();
+        JMenuItem redoItem = new JMenuItem(batch == null ? "Redo" : "Redo: " + batch.title());
+        redoItem.setEnabled(batch != null);
+        redoItem.addActionListener(e -> {
+            HighlightJournal.Batch redone = journal.redo();
+            if (redone != null) {
+                bulkRunner.start("Redo " + redone.title(), redone::indexes, redone::reapply,
+                        () -> journal.reapplied(redone));
             }
         });
-        return autoHighlight;
+        return redoItem;
+    }
+
+    private String getHost(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            return URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     /**
-     * Create clear highlight menu item
+     * The selected items as Burp provides them, without copying. Falls back to the message
+     * editor's item when nothing is selected in a table.
      */
-    private JMenuItem createClearHighlightItem(List<HttpRequestResponse> items) {
-        JMenuItem clearHighlight = new JMenuItem("Crayon: Remove highlights");
-        clearHighlight.addActionListener(e -> {
-            if (items.isEmpty()) {
-                if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                    logging.logToOutput("Crayon: No items to clear highlights from");
+    private List<HttpRequestResponse> selection(ContextMenuEvent event) {
+        List<HttpRequestResponse> selected = event.selectedRequestResponses();
+        if (selected != null && !selected.isEmpty()) {
+            return selected;
+        }
+        if (event.messageEditorRequestResponse().isPresent()) {
+            return List.of(event.messageEditorRequestResponse().get().requestResponse());
+        }
+        return List.of();
+    }
+
+    /**
+     * URL of the message editor's request when no item is selected, or null
+     */
+    private String editorUrl(ContextMenuEvent event) {
+        try {
+            if (event.messageEditorRequestResponse().isPresent()) {
+                HttpRequestResponse requestResponse = event.messageEditorRequestResponse().get().requestResponse();
+                if (requestResponse != null && requestResponse.request() != null) {
+                    return requestResponse.request().url();
                 }
-                return;
             }
-            
-            for (HttpRequestResponse item : items) {
-                item.annotations().setHighlightColor(HighlightColor.NONE);
-            }
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput("Crayon: Removed highlights from " + items.size() + " item(s)");
-            }
-        });
-        return clearHighlight;
+        } catch (Exception e) {
+            log.debug(() -> "Crayon: Error extracting URL from context: " + e.getMessage());
+        }
+        return null;
     }
 
     @Override
     public List<Component> provideMenuItems(WebSocketContextMenuEvent event) {
         // WebSocket messages don't support highlighting in the same way
-        // But we can add support for Logger WebSocket messages
-        if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-            logging.logToOutput("Crayon WebSocket Context Menu: Invoked");
-        }
-        
         // For now, return null to maintain existing behavior
         // Future enhancement: Add WebSocket highlighting if Burp API supports it
         return null;
     }
 
-    private boolean applyAutoHighlight(HttpRequestResponse requestResponse) {
+    private boolean applyAutoHighlight(HttpRequestResponse requestResponse, HighlightJournal.Batch batch) {
         if (requestResponse.response() == null) {
             return false;
         }
+        return applyAutoHighlight(requestResponse.request(), requestResponse.response(),
+                requestResponse.annotations(), batch);
+    }
 
-        short statusCode = requestResponse.response().statusCode();
-        HighlightColor color = null;
-
+    private boolean applyAutoHighlight(HttpRequest request, HttpResponse response, Annotations annotations,
+                                       HighlightJournal.Batch batch) {
         // Apply same logic as RequestColorizer
-        if (statusCode >= 500) {
-            color = getColorFromSetting(Extension.STATUS_5XX_COLOR_SETTING);
-        } else if (statusCode >= 400) {
-            color = getColorFromSetting(Extension.STATUS_4XX_COLOR_SETTING);
-        } else if (statusCode >= 300) {
-            color = getColorFromSetting(Extension.STATUS_3XX_COLOR_SETTING);
-        } else if (statusCode >= 200) {
-            String method = requestResponse.request().method();
-            String contentType = requestResponse.response().headerValue("Content-Type");
-            if (contentType == null) contentType = "";
-
-            if ("GET".equalsIgnoreCase(method)) {
-                if (contentType.contains("json")) {
-                    color = getColorFromSetting(Extension.STATUS_200_GET_JSON_COLOR_SETTING);
-                } else if (contentType.contains("html")) {
-                    color = getColorFromSetting(Extension.STATUS_200_GET_HTML_COLOR_SETTING);
-                } else {
-                    color = getColorFromSetting(Extension.STATUS_200_GET_COLOR_SETTING);
-                }
-            } else if ("POST".equalsIgnoreCase(method)) {
-                color = getColorFromSetting(Extension.STATUS_200_POST_COLOR_SETTING);
-            } else {
-                color = getColorFromSetting(Extension.STATUS_200_OTHER_COLOR_SETTING);
-            }
-        }
+        ColorRules snapshot = rules.current();
+        ResponseFeatures features = ResponseFeatureExtractor.extract(snapshot, request, response);
+        HighlightColor color = ResponseClassifier.classify(snapshot, features);
 
-        // Fallback to content type colors
-        if (color == null) {
-            String contentType = requestResponse.response().headerValue("Content-Type");
-            if (contentType == null) contentType = "";
-
-            if (contentType.contains("json")) {
-                color = getColorFromSetting(Extension.JSON_COLOR_SETTING);
-            } else if (contentType.contains("xml")) {
-                color = getColorFromSetting(Extension.XML_COLOR_SETTING);
-            } else if (contentType.contains("html")) {
-                color = getColorFromSetting(Extension.HTML_COLOR_SETTING);
-            } else if (contentType.startsWith("text/plain")) {
-                color = getColorFromSetting(Extension.TEXT_COLOR_SETTING);
-            }
-        }
-
-        if (color != null) {
-            requestResponse.annotations().setHighlightColor(color);
-            return true;
-        }
-        return false;
-    }
-
-    private HighlightColor getColorFromSetting(String settingName) {
-        String colorName = settings.getString(settingName);
-        if (colorName != null) {
-            try {
-                return HighlightColor.valueOf(colorName);
-            } catch (IllegalArgumentException e) {
-                logging.logToError("Invalid color name in settings: " + colorName);
-            }
-        }
-        return null;
+        return color != null && batch.recolor(annotations, color);
     }
 }
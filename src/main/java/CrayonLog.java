@@ -0,0 +1,217 @@
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import burp.api.montoya.logging.Logging;
+
+/**
+ * Asynchronous diagnostics sink. Traffic threads only enqueue into a bounded lock-free ring
+ * buffer; a single background thread builds the messages and writes them to Burp's output.
+ * When the buffer is full, messages are dropped and counted instead of blocking the caller.
+ */
+public class CrayonLog {
+    public enum Level {
+        DEBUG,
+        INFO,
+        ERROR
+    }
+
+    private static final Level[] LEVELS = Level.values();
+    private static final int CAPACITY = 4096;
+    private static final int MAX_LINES_PER_SECOND = 500;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final Logging logging;
+    private final ColorRulesProvider rules;
+
+    // Bounded multi-producer, single-consumer queue: a slot may be written once its
+    // sequence equals the claiming position and read once it equals position + 1
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicReferenceArray<Object> messages = new AtomicReferenceArray<>(CAPACITY);
+    private final byte[] levels = new byte[CAPACITY];
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public CrayonLog(Logging logging, ColorRulesProvider rules) {
+        this.logging = logging;
+        this.rules = rules;
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        this.drainer = new Thread(this::drain, "Crayon log writer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public boolean isEnabled(Level level) {
+        ColorRules snapshot = rules.current();
+        return switch (level) {
+            case DEBUG -> snapshot.debugMode();
+            case INFO -> snapshot.logEnabled() || snapshot.debugMode();
+            case ERROR -> true;
+        };
+    }
+
+    /**
+     * Log a verbose message. The supplier runs on the log thread, so it must only capture
+     * values that stay valid after the handler returns.
+     */
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, message);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, message);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, message);
+        }
+    }
+
+    public void error(String message) {
+        enqueue(Level.ERROR, message);
+    }
+
+    /**
+     * Number of messages discarded because the buffer was full or the output rate limit was hit
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of messages folded into a "repeated" line because they were identical to the previous one
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public void close() {
+        running = false;
+        drainer.interrupt();
+    }
+
+    private void enqueue(Level level, Object message) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & (CAPACITY - 1));
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    levels[index] = (byte) level.ordinal();
+                    messages.lazySet(index, message);
+                    sequences.lazySet(index, position + 1);
+                    return;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // Buffer full: never wait for the writer
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void drain() {
+        String previous = null;
+        Level previousLevel = null;
+        int repeats = 0;
+        long windowStart = System.nanoTime();
+        int linesInWindow = 0;
+        long reportedDrops = 0;
+
+        while (running) {
+            int index = (int) (head & (CAPACITY - 1));
+            if (sequences.get(index) != head + 1) {
+                // Idle: flush what was coalesced and report drops before waiting for more
+                if (repeats > 0) {
+                    write(previousLevel, "(previous message repeated " + repeats + " times)");
+                    repeats = 0;
+                }
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    write(Level.ERROR, "Crayon: " + (drops - reportedDrops) + " log message(s) dropped");
+                    reportedDrops = drops;
+                }
+                previous = null;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            Object entry = messages.get(index);
+            Level level = LEVELS[levels[index]];
+            messages.lazySet(index, null);
+            sequences.lazySet(index, head + CAPACITY);
+            head++;
+
+            String text = render(entry);
+            if (text == null) {
+                continue;
+            }
+            if (text.equals(previous) && level == previousLevel) {
+                repeats++;
+                coalesced.increment();
+                continue;
+            }
+            if (repeats > 0) {
+                write(previousLevel, "(previous message repeated " + repeats + " times)");
+                repeats = 0;
+            }
+            previous = text;
+            previousLevel = level;
+
+            long now = System.nanoTime();
+            if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                windowStart = now;
+                linesInWindow = 0;
+            }
+            if (linesInWindow++ >= MAX_LINES_PER_SECOND && level != Level.ERROR) {
+                dropped.increment();
+                continue;
+            }
+            write(level, text);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private String render(Object entry) {
+        try {
+            if (entry instanceof Supplier) {
+                return Objects.toString(((Supplier<String>) entry).get());
+            }
+            return (String) entry;
+        } catch (Exception e) {
+            return "Crayon: Failed to build log message: " + e;
+        }
+    }
+
+    private void write(Level level, String text) {
+        try {
+            if (level == Level.ERROR) {
+                logging.logToError(text);
+            } else {
+                logging.logToOutput(text);
+            }
+        } catch (Exception e) {
+            // Burp may reject output while the extension is unloading
+        }
+    }
+}
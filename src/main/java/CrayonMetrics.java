@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import burp.api.montoya.core.HighlightColor;
+
+/**
+ * Low-overhead runtime counters: classification latency and color counts per handler, and
+ * hit counts per body and URL rule. All counters are {@link LongAdder}s, so recording from
+ * many traffic threads never contends on one memory location.
+ */
+public class CrayonMetrics {
+    public enum Handler {
+        HTTP("HTTP responses"),
+        PROXY_WEBSOCKET("Proxy WebSocket frames"),
+        WEBSOCKET("Other WebSocket frames"),
+        BULK("Bulk action items");
+
+        private final String label;
+
+        Handler(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final HighlightColor[] COLORS = HighlightColor.values();
+
+    private final HandlerMetrics[] handlers = new HandlerMetrics[Handler.values().length];
+    private final ConcurrentHashMap<String, LongAdder> ruleHits = new ConcurrentHashMap<>();
+    private final LongAdder headerOnly = new LongAdder();
+    private final LatencyHistogram queueLag = new LatencyHistogram();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final LongAdder queueRejected = new LongAdder();
+    private final LongAdder queueDropped = new LongAdder();
+    private volatile RuleCounters ruleCounters;
+    private volatile long startedNanos = System.nanoTime();
+
+    public CrayonMetrics() {
+        for (Handler handler : Handler.values()) {
+            handlers[handler.ordinal()] = new HandlerMetrics();
+        }
+    }
+
+    public HandlerMetrics handler(Handler handler) {
+        return handlers[handler.ordinal()];
+    }
+
+    /**
+     * Count a hit for the body rule with this id in the given snapshot
+     */
+    public void recordBodyRule(ColorRules snapshot, int ruleId) {
+        ruleCounters(snapshot).body[ruleId].increment();
+    }
+
+    /**
+     * Count a hit for the URL rule with this id in the given snapshot
+     */
+    public void recordUrlRule(ColorRules snapshot, int ruleId) {
+        ruleCounters(snapshot).url[ruleId].increment();
+    }
+
+    /**
+     * Count a response classified from its headers alone because its body was over the size threshold
+     */
+    public void recordHeaderOnly() {
+        headerOnly.increment();
+    }
+
+    public long headerOnly() {
+        return headerOnly.sum();
+    }
+
+    /**
+     * Count a response handed to the background classifiers
+     */
+    public void queueEntered() {
+        int depth = queueDepth.incrementAndGet();
+        int max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+
+    /**
+     * Record how long a response waited before a background classifier picked it up
+     */
+    public void queueLeft(long queuedNanos) {
+        queueDepth.decrementAndGet();
+        queueLag.record(System.nanoTime() - queuedNanos);
+    }
+
+    /**
+     * Count a response the queue had no room for, handed to the cheap rules instead
+     */
+    public void queueRejected() {
+        queueDepth.decrementAndGet();
+        queueRejected.increment();
+    }
+
+    /**
+     * Count a response the cheap rules left uncolored, because they cannot honor first-seen or anomaly mode
+     */
+    public void queueDropped() {
+        queueDropped.increment();
+    }
+
+    public int queueDepth() {
+        return queueDepth.get();
+    }
+
+    public int maxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long queueRejectedCount() {
+        return queueRejected.sum();
+    }
+
+    public long queueDroppedCount() {
+        return queueDropped.sum();
+    }
+
+    public LatencyHistogram queueLag() {
+        return queueLag;
+    }
+
+    /**
+     * Hits per rule, keyed by a readable rule description. Counts survive recompiles of
+     * unchanged rules, since counters are shared by description.
+     */
+    public Map<String, Long> ruleHits() {
+        Map<String, Long> hits = new TreeMap<>();
+        ruleHits.forEach((rule, count) -> hits.put(rule, count.sum()));
+        return hits;
+    }
+
+    /**
+     * Nanoseconds since the metrics were created or last reset
+     */
+    public long uptimeNanos() {
+        return System.nanoTime() - startedNanos;
+    }
+
+    public void reset() {
+        for (HandlerMetrics handler : handlers) {
+            handler.reset();
+        }
+        ruleHits.values().forEach(LongAdder::reset);
+        headerOnly.reset();
+        // The current depth is live state, not a counter; only its high-water mark starts over
+        queueLag.reset();
+        maxQueueDepth.set(queueDepth.get());
+        queueRejected.reset();
+        queueDropped.reset();
+        startedNanos = System.nanoTime();
+    }
+
+    /**
+     * Write a snapshot of all counters as JSON
+     */
+    public void export(Path file) throws IOException {
+        Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+    }
+
+    public String toJson() {
+        long uptimeNanos = uptimeNanos();
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"uptimeSeconds\": ").append(uptimeNanos / 1_000_000_000L).append(",\n");
+        json.append("  \"headerOnlyResponses\": ").append(headerOnly()).append(",\n");
+        long[] lag = queueLag.counts();
+        json.append("  \"backgroundQueue\": {\"depth\": ").append(queueDepth());
+        json.append(", \"maxDepth\": ").append(maxQueueDepth());
+        json.append(", \"cheapFallbacks\": ").append(queueRejectedCount());
+        json.append(", \"dropped\": ").append(queueDroppedCount());
+        json.append(", \"lagP50Nanos\": ").append(Math.min(queueLag.maxNanos(), LatencyHistogram.percentile(lag, 50)));
+        json.append(", \"lagP99Nanos\": ").append(Math.min(queueLag.maxNanos(), LatencyHistogram.percentile(lag, 99)));
+        json.append(", \"lagMaxNanos\": ").append(queueLag.maxNanos()).append("},\n");
+        json.append("  \"handlers\": {");
+        Handler[] values = Handler.values();
+        for (int h = 0; h < values.length; h++) {
+            HandlerMetrics handler = handlers[h];
+            long[] counts = handler.latency.counts();
+            long count = LatencyHistogram.count(counts);
+            long max = handler.latency.maxNanos();
+            json.append(h == 0 ? "\n" : ",\n");
+            json.append("    \"").append(values[h].name()).append("\": {");
+            json.append("\"count\": ").append(count);
+            json.append(", \"perSecond\": ").append(count * 1_000_000_000L / Math.max(1, uptimeNanos));
+            json.append(", \"p50Nanos\": ").append(Math.min(max, LatencyHistogram.percentile(counts, 50)));
+            json.append(", \"p99Nanos\": ").append(Math.min(max, LatencyHistogram.percentile(counts, 99)));
+            json.append(", \"p999Nanos\": ").append(Math.min(max, LatencyHistogram.percentile(counts, 99.9)));
+            json.append(", \"maxNanos\": ").append(max);
+            json.append(", \"meanNanos\": ").append(count == 0 ? 0 : handler.latency.totalNanos() / count);
+            json.append(", \"uncolored\": ").append(handler.uncolored());
+            json.append(", \"colors\": {");
+            boolean first = true;
+            for (HighlightColor color : COLORS) {
+                long colored = handler.colorCount(color);
+                if (colored > 0) {
+                    json.append(first ? "" : ", ").append('"').append(color.name()).append("\": ").append(colored);
+                    first = false;
+                }
+            }
+            json.append("}}");
+        }
+        json.append("\n  },\n  \"rules\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> hit : ruleHits().entrySet()) {
+            json.append(first ? "\n" : ",\n");
+            json.append("    ").append(JsonWriter.quote(hit.getKey())).append(": ").append(hit.getValue());
+            first = false;
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    private RuleCounters ruleCounters(ColorRules snapshot) {
+        RuleCounters counters = ruleCounters;
+        if (counters == null || counters.snapshot != snapshot) {
+            // Resolved once per snapshot, so recording a hit never builds a key
+            counters = new RuleCounters(snapshot, ruleHits);
+            ruleCounters = counters;
+        }
+        return counters;
+    }
+
+    /**
+     * Latency and per-color counts for one handler
+     */
+    public static final class HandlerMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder[] colorCounts = new LongAdder[COLORS.length];
+        private final LongAdder uncolored = new LongAdder();
+
+        private HandlerMetrics() {
+            for (int i = 0; i < colorCounts.length; i++) {
+                colorCounts[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record one classified message: its processing time since {@code startNanos} and
+         * its color, or null if it was left uncolored
+         */
+        public void record(long startNanos, HighlightColor color) {
+            latency.record(System.nanoTime() - startNanos);
+            if (color == null) {
+                uncolored.increment();
+            } else {
+                colorCounts[color.ordinal()].increment();
+            }
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public long colorCount(HighlightColor color) {
+            return colorCounts[color.ordinal()].sum();
+        }
+
+        public long uncolored() {
+            return uncolored.sum();
+        }
+
+        private void reset() {
+            latency.reset();
+            for (LongAdder count : colorCounts) {
+                count.reset();
+            }
+            uncolored.reset();
+        }
+    }
+
+    private static final class RuleCounters {
+        private final ColorRules snapshot;
+        private final LongAdder[] body;
+        private final LongAdder[] url;
+
+        private RuleCounters(ColorRules snapshot, ConcurrentHashMap<String, LongAdder> hits) {
+            this.snapshot = snapshot;
+            this.body = new LongAdder[snapshot.bodyRuleCount()];
+            for (int i = 0; i < body.length; i++) {
+                String key = "body " + snapshot.bodyRulePattern(i) + "=" + snapshot.bodyRuleColor(i).name();
+                body[i] = hits.computeIfAbsent(key, k -> new LongAdder());
+            }
+            this.url = new LongAdder[snapshot.urlRuleCount()];
+            for (int i = 0; i < url.length; i++) {
+                String key = "url " + snapshot.urlRulePattern(i) + "=" + snapshot.urlRuleColor(i).name();
+                url[i] = hits.computeIfAbsent(key, k -> new LongAdder());
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+
+import burp.api.montoya.core.HighlightColor;
+
+/**
+ * Suite tab showing {@link CrayonMetrics}: latency percentiles and throughput per handler,
+ * color counts and rule hits. It polls the counters on a Swing timer while it is visible,
+ * so the traffic handlers never touch the UI.
+ */
+public class CrayonMetricsTab extends JPanel {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final CrayonMetrics.Handler[] HANDLERS = CrayonMetrics.Handler.values();
+    // Bulk actions only record time, so they have no color column
+    private static final CrayonMetrics.Handler[] COLORED_HANDLERS = EnumSet.complementOf(
+            EnumSet.of(CrayonMetrics.Handler.BULK)).toArray(new CrayonMetrics.Handler[0]);
+    private static final HighlightColor[] COLORS = HighlightColor.values();
+
+    private final CrayonMetrics metrics;
+    private final DefaultTableModel handlerModel;
+    private final DefaultTableModel colorModel;
+    private final DefaultTableModel ruleModel;
+    private final JLabel uptime = new JLabel(" ");
+    private final Timer timer;
+
+    // Previous poll, to compute the live rate
+    private final long[] previousCounts = new long[HANDLERS.length];
+    private long previousPollNanos = System.nanoTime();
+
+    public CrayonMetricsTab(CrayonMetrics metrics) {
+        super(new BorderLayout(8, 8));
+        this.metrics = metrics;
+        setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+
+        handlerModel = readOnlyModel("Handler", "Messages", "Now (/s)", "Average (/s)", "p50", "p99", "p99.9", "Max");
+        for (CrayonMetrics.Handler handler : HANDLERS) {
+            handlerModel.addRow(new Object[]{handler.label(), 0L, 0L, 0L, "", "", "", ""});
+        }
+
+        String[] colorColumns = new String[COLORED_HANDLERS.length + 1];
+        colorColumns[0] = "Color";
+        for (int h = 0; h < COLORED_HANDLERS.length; h++) {
+            colorColumns[h + 1] = COLORED_HANDLERS[h].label();
+        }
+        colorModel = readOnlyModel(colorColumns);
+        ruleModel = readOnlyModel("Rule", "Hits");
+
+        JPanel tables = new JPanel(new GridLayout(3, 1, 8, 8));
+        tables.add(titled("Classification time and throughput", new JTable(handlerModel)));
+        tables.add(titled("Colors applied", new JTable(colorModel)));
+        tables.add(titled("Rule hits", new JTable(ruleModel)));
+        add(tables, BorderLayout.CENTER);
+
+        JButton reset = new JButton("Reset");
+        reset.addActionListener(e -> {
+            metrics.reset();
+            Arrays.fill(previousCounts, 0);
+            refresh();
+        });
+        JButton export = new JButton("Export snapshot...");
+        export.addActionListener(e -> export());
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.add(uptime, BorderLayout.WEST);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        buttons.add(reset);
+        buttons.add(export);
+        footer.add(buttons, BorderLayout.EAST);
+        add(footer, BorderLayout.SOUTH);
+
+        timer = new Timer(REFRESH_MILLIS, e -> {
+            if (isShowing()) {
+                refresh();
+            }
+        });
+        timer.start();
+    }
+
+    /**
+     * Stop polling; called when the extension is unloaded
+     */
+    public void close() {
+        timer.stop();
+    }
+
+    private void refresh() {
+        long now = System.nanoTime();
+        long intervalNanos = Math.max(1, now - previousPollNanos);
+        long uptimeNanos = Math.max(1, metrics.uptimeNanos());
+        previousPollNanos = now;
+
+        for (int h = 0; h < HANDLERS.length; h++) {
+            LatencyHistogram latency = metrics.handler(HANDLERS[h]).latency();
+            long[] counts = latency.counts();
+            long count = LatencyHistogram.count(counts);
+            // Percentiles are bucket upper bounds, so never report more than the actual maximum
+            long max = latency.maxNanos();
+            handlerModel.setValueAt(count, h, 1);
+            handlerModel.setValueAt(Math.max(0, count - previousCounts[h]) * 1_000_000_000L / intervalNanos, h, 2);
+            handlerModel.setValueAt(count * 1_000_000_000L / uptimeNanos, h, 3);
+            handlerModel.setValueAt(formatNanos(Math.min(max, LatencyHistogram.percentile(counts, 50))), h, 4);
+            handlerModel.setValueAt(formatNanos(Math.min(max, LatencyHistogram.percentile(counts, 99))), h, 5);
+            handlerModel.setValueAt(formatNanos(Math.min(max, LatencyHistogram.percentile(counts, 99.9))), h, 6);
+            handlerModel.setValueAt(formatNanos(max), h, 7);
+            previousCounts[h] = count;
+        }
+
+        colorModel.setRowCount(0);
+        for (HighlightColor color : COLORS) {
+            Object[] row = new Object[COLORED_HANDLERS.length + 1];
+            row[0] = color.name();
+            long total = 0;
+            for (int h = 0; h < COLORED_HANDLERS.length; h++) {
+                long count = metrics.handler(COLORED_HANDLERS[h]).colorCount(color);
+                row[h + 1] = count;
+                total += count;
+            }
+            if (total > 0) {
+                colorModel.addRow(row);
+            }
+        }
+
+        ruleModel.setRowCount(0);
+        for (Map.Entry<String, Long> hit : metrics.ruleHits().entrySet()) {
+            ruleModel.addRow(new Object[]{hit.getKey(), hit.getValue()});
+        }
+
+        uptime.setText("Collecting for " + uptimeNanos / 1_000_000_000L + " s, "
+                + metrics.headerOnly() + " response(s) classified from headers only; background queue "
+                + metrics.queueDepth() + " (max " + metrics.maxQueueDepth() + "), lag p99 "
+                + formatNanos(Math.min(metrics.queueLag().maxNanos(),
+                        LatencyHistogram.percentile(metrics.queueLag().counts(), 99)))
+                + ", " + metrics.queueRejectedCount() + " cheap fallback(s), " + metrics.queueDroppedCount()
+                + " left uncolored");
+    }
+
+    private void export() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("crayon-metrics.json"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            metrics.export(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Failed to export metrics: " + e.getMessage(),
+                    "Crayon", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1f \u00b5s", nanos / 1_000.0);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1f ms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2f s", nanos / 1_000_000_000.0);
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static JPanel titled(String title, JTable table) {
+        table.setFillsViewportHeight(true);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(BorderFactory.createTitledBorder(title));
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        return panel;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Normalizes a request to its endpoint: host, method and path with variable segments (numbers,
+ * UUIDs, long hex or token-like values) collapsed, so {@code GET /users/42/orders} and
+ * {@code GET /users/97/orders} are the same endpoint. The query string is ignored.
+ * {@link #hash} computes a 64-bit key in place without building the template string.
+ */
+public final class EndpointTemplate {
+    /** Replaces a variable segment in {@link #template} */
+    public static final String PLACEHOLDER = "{}";
+
+    private static final int MIN_HEX_LENGTH = 16;
+    private static final int MIN_TOKEN_LENGTH = 20;
+
+    private EndpointTemplate() {
+    }
+
+    /**
+     * 64-bit key of the endpoint; the host is compared ignoring case
+     */
+    public static long hash(String method, String url) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < method.length(); i++) {
+            h = step(h, method.charAt(i));
+        }
+        h = step(h, ' ');
+        int hostStart = UrlParts.hostStart(url);
+        int hostEnd = UrlParts.hostEnd(url, hostStart);
+        for (int i = hostStart; i < hostEnd; i++) {
+            h = step(h, Character.toLowerCase(url.charAt(i)));
+        }
+        int pathStart = UrlParts.pathStart(url, hostStart);
+        int pathEnd = UrlParts.pathEnd(url, pathStart);
+        int segmentStart = pathStart;
+        for (int i = pathStart; i <= pathEnd; i++) {
+            if (i == pathEnd || url.charAt(i) == '/') {
+                if (i > segmentStart) {
+                    if (isVariable(url, segmentStart, i)) {
+                        h = step(step(h, '{'), '}');
+                    } else {
+                        for (int j = segmentStart; j < i; j++) {
+                            h = step(h, url.charAt(j));
+                        }
+                    }
+                }
+                if (i < pathEnd) {
+                    h = step(h, '/');
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return mix(h);
+    }
+
+    /**
+     * Readable form of the endpoint, e.g. {@code GET app.example.com/users/{}/orders}
+     */
+    public static String template(String method, String url) {
+        int hostStart = UrlParts.hostStart(url);
+        int hostEnd = UrlParts.hostEnd(url, hostStart);
+        int pathStart = UrlParts.pathStart(url, hostStart);
+        int pathEnd = UrlParts.pathEnd(url, pathStart);
+        StringBuilder template = new StringBuilder(method.length() + pathEnd - hostStart + 1);
+        template.append(method).append(' ');
+        template.append(url, hostStart, hostEnd);
+        int segmentStart = pathStart;
+        for (int i = pathStart; i <= pathEnd; i++) {
+            if (i == pathEnd || url.charAt(i) == '/') {
+                if (i > segmentStart) {
+                    if (isVariable(url, segmentStart, i)) {
+                        template.append(PLACEHOLDER);
+                    } else {
+                        template.append(url, segmentStart, i);
+                    }
+                }
+                if (i < pathEnd) {
+                    template.append('/');
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return template.toString();
+    }
+
+    /**
+     * Whether a path segment looks like an identifier rather than part of the route
+     */
+    static boolean isVariable(String url, int start, int end) {
+        int length = end - start;
+        int digits = 0;
+        int hex = 0;
+        int letters = 0;
+        int dashes = 0;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                hex++;
+            } else if ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+                hex++;
+                letters++;
+            } else if ((c >= 'g' && c <= 'z') || (c >= 'G' && c <= 'Z')) {
+                letters++;
+            } else if (c == '-') {
+                dashes++;
+            } else if (c != '_') {
+                // Dots, percent escapes etc. usually mean a file name or a readable slug
+                return false;
+            }
+        }
+        if (digits == length) {
+            return true;
+        }
+        if (length == 36 && dashes == 4 && hex == 32) {
+            return true;
+        }
+        if (digits > 0 && hex == length && length >= MIN_HEX_LENGTH) {
+            return true;
+        }
+        // Long random-looking tokens mix letters and digits; readable slugs rarely contain digits
+        return length >= MIN_TOKEN_LENGTH && digits > 0 && letters > 0;
+    }
+
+    private static long step(long h, char c) {
+        return (h ^ c) * 0x100000001B3L;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,5 +1,8 @@
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import burp.api.montoya.BurpExtension;
@@ -26,65 +29,168 @@ public class Extension implements BurpExtension {
     public static final String STATUS_200_OTHER_COLOR_SETTING = "200 Other Methods Color";
     public static final String WEBSOCKET_INCOMING_COLOR_SETTING = "WebSocket Incoming Color";
     public static final String WEBSOCKET_OUTGOING_COLOR_SETTING = "WebSocket Outgoing Color";
+    public static final String BODY_RULES_SETTING = "Body rules (pattern=COLOR; ...)";
+    public static final String BODY_SCAN_WINDOW_SETTING = "Body scan window (KB)";
+    public static final String HEADER_ONLY_THRESHOLD_SETTING = "Headers only above body size (KB, 0 = never)";
+    public static final String URL_RULES_SETTING = "URL rules (host/path=COLOR; ...)";
+    public static final String WEBSOCKET_TEXT_RULES_SETTING = "WebSocket text rules (pattern=COLOR; ^prefix=COLOR; ...)";
+    public static final String WEBSOCKET_SCAN_WINDOW_SETTING = "WebSocket text scan window (KB)";
+    public static final String WEBSOCKET_BINARY_RULES_SETTING = "WebSocket binary rules (0xNN=COLOR; ...)";
+    public static final String WEBSOCKET_NEW_SHAPES_SETTING = "Highlight only new WebSocket message shapes";
+    public static final String WEBSOCKET_SHAPE_MEMORY_SETTING = "WebSocket shapes remembered per socket";
+    public static final String ANOMALY_ENABLED_SETTING = "Highlight anomalous responses per endpoint";
+    public static final String ANOMALY_COLOR_SETTING = "Anomaly Color";
+    public static final String ANOMALY_THRESHOLD_SETTING = "Anomaly threshold (standard deviations)";
+    public static final String ANOMALY_ENDPOINTS_SETTING = "Endpoints tracked for anomalies";
+    public static final String FIRST_SEEN_SETTING = "Highlight only first-seen endpoints";
+    public static final String FIRST_SEEN_CAPACITY_SETTING = "First-seen endpoints expected";
+    public static final String FIRST_SEEN_FALSE_POSITIVE_SETTING = "First-seen false positive rate (1 in N)";
+    public static final String FIRST_SEEN_PERSIST_SETTING = "Remember first-seen endpoints in the project";
+    public static final String INTRUDER_OUTLIERS_SETTING = "Highlight only Intruder outliers";
+    public static final String INTRUDER_OUTLIER_COLOR_SETTING = "Intruder Outlier Color";
+    public static final String IN_SCOPE_ONLY_SETTING = "Colorize in-scope traffic only";
+    public static final String BACKGROUND_CLASSIFICATION_SETTING = "Classify HTTP responses in the background";
+    public static final String TOOL_PROXY_SETTING = "Colorize Proxy traffic";
+    public static final String TOOL_TARGET_SETTING = "Colorize Target traffic";
+    public static final String TOOL_INTRUDER_SETTING = "Colorize Intruder traffic";
+    public static final String TOOL_SCANNER_SETTING = "Colorize Scanner traffic";
+    public static final String TOOL_SEQUENCER_SETTING = "Colorize Sequencer traffic";
+    public static final String TOOL_REPEATER_SETTING = "Colorize Repeater traffic";
+    public static final String TOOL_EXTENSIONS_SETTING = "Colorize extension traffic";
+    public static final String RULES_FILE_SETTING = "Rules file (JSON, reloaded on change)";
     public static final String LOG_ENABLED_SETTING = "Enable logging";
     public static final String DEBUG_MODE_SETTING = "Enable debug mode (verbose logging)";
 
+    /**
+     * Default value of every setting, in panel order. Colors are stored as {@link HighlightColor}
+     * and shown as a list; the command-line classifier and the benchmarks start from these too.
+     */
+    static final Map<String, Object> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put(HTML_COLOR_SETTING, HighlightColor.BLUE);
+        DEFAULTS.put(JSON_COLOR_SETTING, HighlightColor.GREEN);
+        DEFAULTS.put(XML_COLOR_SETTING, HighlightColor.BLUE);
+        DEFAULTS.put(TEXT_COLOR_SETTING, HighlightColor.GRAY);
+        DEFAULTS.put(STATUS_5XX_COLOR_SETTING, HighlightColor.RED);
+        DEFAULTS.put(STATUS_4XX_COLOR_SETTING, HighlightColor.ORANGE);
+        DEFAULTS.put(STATUS_3XX_COLOR_SETTING, HighlightColor.YELLOW);
+        DEFAULTS.put(STATUS_200_GET_COLOR_SETTING, HighlightColor.GREEN);
+        DEFAULTS.put(STATUS_200_GET_JSON_COLOR_SETTING, HighlightColor.GREEN);
+        DEFAULTS.put(STATUS_200_GET_HTML_COLOR_SETTING, HighlightColor.CYAN);
+        DEFAULTS.put(STATUS_200_POST_COLOR_SETTING, HighlightColor.BLUE);
+        DEFAULTS.put(STATUS_200_OTHER_COLOR_SETTING, HighlightColor.PINK);
+        DEFAULTS.put(WEBSOCKET_INCOMING_COLOR_SETTING, HighlightColor.GREEN);
+        DEFAULTS.put(WEBSOCKET_OUTGOING_COLOR_SETTING, HighlightColor.YELLOW);
+        DEFAULTS.put(BODY_RULES_SETTING, "");
+        DEFAULTS.put(BODY_SCAN_WINDOW_SETTING, 64);
+        DEFAULTS.put(HEADER_ONLY_THRESHOLD_SETTING, 1024);
+        DEFAULTS.put(URL_RULES_SETTING, "");
+        DEFAULTS.put(WEBSOCKET_TEXT_RULES_SETTING, "");
+        DEFAULTS.put(WEBSOCKET_SCAN_WINDOW_SETTING, 64);
+        DEFAULTS.put(WEBSOCKET_BINARY_RULES_SETTING, "");
+        DEFAULTS.put(WEBSOCKET_NEW_SHAPES_SETTING, false);
+        DEFAULTS.put(WEBSOCKET_SHAPE_MEMORY_SETTING, 4096);
+        DEFAULTS.put(ANOMALY_ENABLED_SETTING, false);
+        DEFAULTS.put(ANOMALY_COLOR_SETTING, HighlightColor.MAGENTA);
+        DEFAULTS.put(ANOMALY_THRESHOLD_SETTING, 3);
+        DEFAULTS.put(ANOMALY_ENDPOINTS_SETTING, 65536);
+        DEFAULTS.put(FIRST_SEEN_SETTING, false);
+        DEFAULTS.put(FIRST_SEEN_CAPACITY_SETTING, 1000000);
+        DEFAULTS.put(FIRST_SEEN_FALSE_POSITIVE_SETTING, 10000);
+        DEFAULTS.put(FIRST_SEEN_PERSIST_SETTING, false);
+        DEFAULTS.put(INTRUDER_OUTLIERS_SETTING, false);
+        DEFAULTS.put(INTRUDER_OUTLIER_COLOR_SETTING, HighlightColor.RED);
+        DEFAULTS.put(IN_SCOPE_ONLY_SETTING, false);
+        DEFAULTS.put(BACKGROUND_CLASSIFICATION_SETTING, false);
+        DEFAULTS.put(TOOL_PROXY_SETTING, true);
+        DEFAULTS.put(TOOL_TARGET_SETTING, true);
+        DEFAULTS.put(TOOL_INTRUDER_SETTING, true);
+        DEFAULTS.put(TOOL_SCANNER_SETTING, false);
+        DEFAULTS.put(TOOL_SEQUENCER_SETTING, false);
+        DEFAULTS.put(TOOL_REPEATER_SETTING, true);
+        DEFAULTS.put(TOOL_EXTENSIONS_SETTING, true);
+        DEFAULTS.put(RULES_FILE_SETTING, "");
+        DEFAULTS.put(LOG_ENABLED_SETTING, false);
+        DEFAULTS.put(DEBUG_MODE_SETTING, false);
+    }
+
     @Override
     public void initialize(MontoyaApi montoyaApi) {
         montoyaApi.extension().setName("Crayon");
 
-        List<String> colorNames = Arrays.stream(HighlightColor.values())
-                .map(Enum::name)
-                .collect(Collectors.toList());
-
         SettingsPanelWithData settingsPanel = SettingsPanelBuilder.settingsPanel()
                 .withPersistence(SettingsPanelPersistence.USER_SETTINGS)
                 .withTitle("Crayon Settings")
-                .withSettings(
-                        SettingsPanelSetting.listSetting(HTML_COLOR_SETTING, colorNames,
-                                HighlightColor.BLUE.name()),
-                        SettingsPanelSetting.listSetting(JSON_COLOR_SETTING, colorNames,
-                                HighlightColor.GREEN.name()),
-                        SettingsPanelSetting.listSetting(XML_COLOR_SETTING, colorNames,
-                                HighlightColor.BLUE.name()),
-                        SettingsPanelSetting.listSetting(TEXT_COLOR_SETTING, colorNames,
-                                HighlightColor.GRAY.name()),
-                        SettingsPanelSetting.listSetting(STATUS_5XX_COLOR_SETTING, colorNames,
-                                HighlightColor.RED.name()),
-                        SettingsPanelSetting.listSetting(STATUS_4XX_COLOR_SETTING, colorNames,
-                                HighlightColor.ORANGE.name()),
-                        SettingsPanelSetting.listSetting(STATUS_3XX_COLOR_SETTING, colorNames,
-                                HighlightColor.YELLOW.name()),
-                        SettingsPanelSetting.listSetting(STATUS_200_GET_COLOR_SETTING, colorNames,
-                                HighlightColor.GREEN.name()),
-                        SettingsPanelSetting.listSetting(STATUS_200_GET_JSON_COLOR_SETTING, colorNames,
-                                HighlightColor.GREEN.name()),
-                        SettingsPanelSetting.listSetting(STATUS_200_GET_HTML_COLOR_SETTING, colorNames,
-                                HighlightColor.CYAN.name()),
-                        SettingsPanelSetting.listSetting(STATUS_200_POST_COLOR_SETTING, colorNames,
-                                HighlightColor.BLUE.name()),
-                        SettingsPanelSetting.listSetting(STATUS_200_OTHER_COLOR_SETTING, colorNames,
-                                HighlightColor.PINK.name()),
-                        SettingsPanelSetting.listSetting(WEBSOCKET_INCOMING_COLOR_SETTING, colorNames,
-                                HighlightColor.GREEN.name()),
-                        SettingsPanelSetting.listSetting(WEBSOCKET_OUTGOING_COLOR_SETTING, colorNames,
-                                HighlightColor.YELLOW.name()),
-                        SettingsPanelSetting.booleanSetting(LOG_ENABLED_SETTING, false),
-                        SettingsPanelSetting.booleanSetting(DEBUG_MODE_SETTING, false))
+                .withSettings(panelSettings())
                 .build();
 
         montoyaApi.userInterface().registerSettingsPanel(settingsPanel);
 
+        // Compiled view of the settings shared by the traffic handlers
+        ColorRulesProvider rules = new ColorRulesProvider(settingsPanel, montoyaApi.logging());
+        montoyaApi.extension().registerUnloadingHandler(rules::close);
+
+        // Diagnostics are written by a background thread so logging never slows down traffic
+        CrayonLog log = new CrayonLog(montoyaApi.logging(), rules);
+        montoyaApi.extension().registerUnloadingHandler(log::close);
+
+        // Latency and hit counters, shown in the Crayon tab
+        CrayonMetrics metrics = new CrayonMetrics();
+        CrayonMetricsTab metricsTab = new CrayonMetricsTab(metrics);
+        montoyaApi.userInterface().registerSuiteTab("Crayon", metricsTab);
+        montoyaApi.extension().registerUnloadingHandler(metricsTab::close);
+
+        // Scope decisions for "in-scope only" mode, forgotten whenever the project scope changes
+        ScopeCache scope = new ScopeCache(montoyaApi.scope(),
+                () -> montoyaApi.burpSuite().exportProjectOptionsAsJson("target.scope"));
+        montoyaApi.scope().registerScopeChangeHandler(change -> scope.invalidate());
+
+        // Per-endpoint baselines for anomaly highlighting, bounded by the settings
+        AnomalyDetector anomalies = new AnomalyDetector();
+
+        // Endpoints seen so far, optionally kept in the project file
+        FirstSeenEndpoints firstSeen = new FirstSeenEndpoints(rules, montoyaApi.persistence().extensionData(), log);
+        montoyaApi.extension().registerUnloadingHandler(firstSeen::close);
+
         // Register HTTP handler for Proxy, Intruder, Logger, and Target
-        montoyaApi.http().registerHttpHandler(new RequestColorizer(montoyaApi, settingsPanel));
+        RequestColorizer colorizer =
+                new RequestColorizer(rules, log, metrics, anomalies, firstSeen, new IntruderOutliers(), scope);
+        montoyaApi.http().registerHttpHandler(colorizer);
+        montoyaApi.extension().registerUnloadingHandler(colorizer::close);
 
         // Register WebSocket handler for Proxy WebSockets
-        montoyaApi.proxy().registerWebSocketCreationHandler(new ProxyWebSocketColorizer(montoyaApi, settingsPanel));
+        montoyaApi.proxy().registerWebSocketCreationHandler(new ProxyWebSocketColorizer(rules, log, metrics, scope));
 
         // Register WebSocket handler for all tools (Target, Repeater, etc.)
-        montoyaApi.websockets().registerWebSocketCreatedHandler(new WebSocketColorizer(montoyaApi, settingsPanel));
+        montoyaApi.websockets().registerWebSocketCreatedHandler(new WebSocketColorizer(rules, log, metrics, scope));
+
+        // Bulk context menu actions run on background workers
+        BulkRunner bulkRunner = new BulkRunner(montoyaApi, log, metrics);
+        montoyaApi.extension().registerUnloadingHandler(bulkRunner::close);
 
         // Register context menu for manual highlighting
-        montoyaApi.userInterface().registerContextMenuItemsProvider(new CrayonContextMenu(montoyaApi, settingsPanel));
+        montoyaApi.userInterface().registerContextMenuItemsProvider(
+                new CrayonContextMenu(montoyaApi, settingsPanel, rules, bulkRunner, log, new HighlightJournal()));
+    }
+
+    private static SettingsPanelSetting[] panelSettings() {
+        List<String> colorNames = Arrays.stream(HighlightColor.values())
+                .map(Enum::name)
+                .collect(Collectors.toList());
+
+        List<SettingsPanelSetting> settings = new ArrayList<>();
+        DEFAULTS.forEach((name, value) -> {
+            if (value instanceof HighlightColor color) {
+                settings.add(SettingsPanelSetting.listSetting(name, colorNames, color.name()));
+            } else if (value instanceof Boolean enabled) {
+                settings.add(SettingsPanelSetting.booleanSetting(name, enabled));
+            } else if (value instanceof Integer number) {
+                settings.add(SettingsPanelSetting.integerSetting(name, number));
+            } else {
+                settings.add(SettingsPanelSetting.stringSetting(name, (String) value));
+            }
+        });
+        return settings.toArray(new SettingsPanelSetting[0]);
     }
 }
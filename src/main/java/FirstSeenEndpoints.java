@@ -0,0 +1,125 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.persistence.PersistedObject;
+
+/**
+ * Remembers which endpoints ({@link EndpointTemplate}) were already seen, in a
+ * {@link BloomFilter} sized from the settings. A few MB cover millions of endpoints; the
+ * price is that, with the configured probability, a new endpoint is taken for a known one.
+ * <p>
+ * When persistence is enabled the filter is stored in the project's extension data, loaded
+ * when the extension starts and saved in the background when it changed, so reopening a
+ * project does not flag every endpoint again. Changing the size or the rate starts over.
+ */
+public class FirstSeenEndpoints {
+    static final String STORE_KEY = "crayon.firstSeenEndpoints";
+    private static final long SAVE_INTERVAL_SECONDS = 30;
+
+    private final ColorRulesProvider rules;
+    private final PersistedObject store;
+    private final CrayonLog log;
+    private final ScheduledExecutorService saver;
+    private volatile BloomFilter filter;
+    private volatile boolean dirty;
+
+    // Guarded by this: whether the stored filter was merged into the current one
+    private boolean loaded;
+
+    /**
+     * @param store where to persist the filter, or null to keep it in memory only
+     */
+    public FirstSeenEndpoints(ColorRulesProvider rules, PersistedObject store, CrayonLog log) {
+        this.rules = rules;
+        this.store = store;
+        this.log = log;
+        if (store == null) {
+            this.saver = null;
+            return;
+        }
+        sync();
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Crayon endpoint filter saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.saver.scheduleWithFixedDelay(this::sync, SAVE_INTERVAL_SECONDS, SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Record an endpoint and report whether it had not been seen before
+     */
+    public boolean add(ColorRules snapshot, String method, String url) {
+        boolean added = filter(snapshot).add(EndpointTemplate.hash(method, url));
+        if (added) {
+            dirty = true;
+        }
+        return added;
+    }
+
+    /**
+     * Forget every endpoint, including the stored ones
+     */
+    public synchronized void clear() {
+        filter(rules.current()).clear();
+        dirty = true;
+        loaded = true;
+    }
+
+    public void close() {
+        if (saver != null) {
+            saver.shutdownNow();
+            sync();
+        }
+    }
+
+    private BloomFilter filter(ColorRules snapshot) {
+        BloomFilter current = filter;
+        long capacity = snapshot.firstSeenCapacity();
+        double rate = snapshot.firstSeenFalsePositiveRate();
+        if (current != null && current.isCompatible(capacity, rate)) {
+            return current;
+        }
+        synchronized (this) {
+            current = filter;
+            if (current == null || !current.isCompatible(capacity, rate)) {
+                current = new BloomFilter(capacity, rate);
+                filter = current;
+                loaded = false;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Merge the stored filter into the current one if that has not happened yet, then store the current one if it changed
+     */
+    private synchronized void sync() {
+        ColorRules snapshot = rules.current();
+        if (!snapshot.firstSeenPersist()) {
+            return;
+        }
+        try {
+            BloomFilter current = filter(snapshot);
+            if (!loaded) {
+                loaded = true;
+                ByteArray stored = store.getByteArray(STORE_KEY);
+                BloomFilter previous = BloomFilter.fromByteArray(stored, snapshot.firstSeenCapacity(),
+                        snapshot.firstSeenFalsePositiveRate());
+                if (previous != null) {
+                    current.addAll(previous);
+                    log.info("Crayon: Restored first-seen endpoints from the project");
+                }
+            }
+            // Nothing is serialized unless an endpoint was added or the filter cleared since the last save
+            if (dirty) {
+                dirty = false;
+                store.setByteArray(STORE_KEY, current.toByteArray());
+            }
+        } catch (Exception e) {
+            log.error("Crayon: Failed to sync first-seen endpoints with the project: " + e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.websocket.Direction;
+
+/**
+ * Picks the color for a WebSocket frame: a matching content rule first, then the direction color.
+ * Frames are only inspected when content rules are configured, and never copied; callers may
+ * pass a null payload when the snapshot has no rules for that frame type.
+ */
+public final class FrameClassifier {
+
+    private FrameClassifier() {
+    }
+
+    public static HighlightColor classifyText(ColorRules rules, Direction direction, String payload) {
+        if (rules.hasWebsocketTextRules() && payload != null) {
+            HighlightColor color = rules.websocketTextRuleColor(payload);
+            if (color != null) {
+                return color;
+            }
+        }
+        return directionColor(rules, direction);
+    }
+
+    public static HighlightColor classifyBinary(ColorRules rules, Direction direction, ByteArray payload) {
+        if (rules.hasWebsocketBinaryRules() && payload != null && payload.length() > 0) {
+            HighlightColor color = rules.websocketOpcodeColor(payload.getByte(0));
+            if (color != null) {
+                return color;
+            }
+        }
+        return directionColor(rules, direction);
+    }
+
+    public static HighlightColor directionColor(ColorRules rules, Direction direction) {
+        // Incoming (from server) vs outgoing (to server)
+        return direction == Direction.SERVER_TO_CLIENT
+                ? rules.websocketIncomingColor()
+                : rules.websocketOutgoingColor();
+    }
+}
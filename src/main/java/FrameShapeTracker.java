@@ -0,0 +1,30 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.websocket.Direction;
+
+/**
+ * Remembers the message shapes seen on one WebSocket so only frames with a new shape are
+ * highlighted. Memory is fixed per socket: once the set is full, the oldest shapes are
+ * forgotten. The set is sized on first use; later changes to the size apply to new sockets.
+ */
+final class FrameShapeTracker {
+    // Distinguishes the same shape sent in opposite directions
+    private static final long INCOMING = 0x2545F4914F6CDD1DL;
+
+    private final MessageShape shape = new MessageShape();
+    private LongFingerprintSet seen;
+
+    synchronized boolean isNewText(Direction direction, String payload, int capacity) {
+        return remember(direction, shape.ofText(payload), capacity);
+    }
+
+    synchronized boolean isNewBinary(Direction direction, ByteArray payload, int capacity) {
+        return remember(direction, shape.ofBinary(payload), capacity);
+    }
+
+    private boolean remember(Direction direction, long fingerprint, int capacity) {
+        if (seen == null) {
+            seen = new LongFingerprintSet(capacity);
+        }
+        return seen.add(direction == Direction.SERVER_TO_CLIENT ? fingerprint ^ INCOMING : fingerprint);
+    }
+}
@@ -0,0 +1,140 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read access to one HAR entry, backed by its parsed JSON so it can be written back unchanged
+ * apart from added fields. Missing fields read as empty values rather than failing.
+ */
+public final class HarEntry {
+    /**
+     * A WebSocket frame from the {@code _webSocketMessages} extension written by Chromium browsers
+     */
+    public record WebSocketMessage(boolean outgoing, boolean binary, String data) {
+        /**
+         * Payload of a binary frame; browsers store binary data as base64
+         */
+        public byte[] binaryData() {
+            try {
+                return Base64.getDecoder().decode(data);
+            } catch (IllegalArgumentException e) {
+                return data.getBytes(StandardCharsets.ISO_8859_1);
+            }
+        }
+    }
+
+    private final Map<String, Object> json;
+
+    HarEntry(Map<String, Object> json) {
+        this.json = json;
+    }
+
+    /**
+     * The underlying JSON object; changes are visible when the entry is written back
+     */
+    public Map<String, Object> json() {
+        return json;
+    }
+
+    public String method() {
+        return string(object(json, "request"), "method");
+    }
+
+    public String url() {
+        return string(object(json, "request"), "url");
+    }
+
+    /**
+     * Response status code, or 0 if the entry has no response
+     */
+    public int status() {
+        Object status = object(json, "response").get("status");
+        return status instanceof Number number ? number.intValue() : 0;
+    }
+
+    public String requestHeader(String name) {
+        return header(object(json, "request"), name);
+    }
+
+    public String responseHeader(String name) {
+        return header(object(json, "response"), name);
+    }
+
+    /**
+     * Names of the request headers, in order
+     */
+    public List<String> requestHeaderNames() {
+        List<String> names = new ArrayList<>();
+        for (Object header : list(object(json, "request"), "headers")) {
+            if (header instanceof Map<?, ?> map && map.get("name") instanceof String name) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The response MIME type recorded by the browser (content.mimeType)
+     */
+    public String responseMimeType() {
+        return string(object(object(json, "response"), "content"), "mimeType");
+    }
+
+    /**
+     * The response body as bytes, decoding base64 content, or an empty array if it was not recorded
+     */
+    public byte[] responseBody() {
+        Map<String, Object> content = object(object(json, "response"), "content");
+        String text = string(content, "text");
+        if ("base64".equals(content.get("encoding"))) {
+            try {
+                return Base64.getDecoder().decode(text);
+            } catch (IllegalArgumentException e) {
+                // Fall through and use the text as recorded
+            }
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public List<WebSocketMessage> webSocketMessages() {
+        List<WebSocketMessage> messages = new ArrayList<>();
+        for (Object message : list(json, "_webSocketMessages")) {
+            if (message instanceof Map<?, ?> map) {
+                Object opcode = map.get("opcode");
+                boolean binary = opcode instanceof Number number && number.intValue() == 2;
+                Object data = map.get("data");
+                messages.add(new WebSocketMessage("send".equals(map.get("type")), binary,
+                        data instanceof String text ? text : ""));
+            }
+        }
+        return messages;
+    }
+
+    private static String header(Map<String, Object> message, String name) {
+        for (Object header : list(message, "headers")) {
+            if (header instanceof Map<?, ?> map && map.get("name") instanceof String headerName
+                    && headerName.equalsIgnoreCase(name) && map.get("value") instanceof String value) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Map<String, Object> parent, String name) {
+        Object value = parent.get(name);
+        return value instanceof Map ? (Map<String, Object>) value : Map.of();
+    }
+
+    private static List<?> list(Map<String, Object> parent, String name) {
+        Object value = parent.get(name);
+        return value instanceof List<?> list ? list : List.of();
+    }
+
+    private static String string(Map<String, Object> parent, String name) {
+        Object value = parent.get(name);
+        return value instanceof String text ? text : "";
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streams the entries of a HAR archive one at a time. Only the current entry is held in
+ * memory, so archives of any size can be processed with a flat footprint.
+ */
+public final class HarReader implements Closeable {
+    private final JsonReader json;
+    private final Map<String, Object> logFields = new LinkedHashMap<>();
+    private final Map<String, Object> trailingLogFields = new LinkedHashMap<>();
+    private boolean inEntries;
+    private boolean finished;
+
+    public HarReader(Reader in) {
+        this.json = new JsonReader(in);
+    }
+
+    /**
+     * The next entry, or null when there are no more
+     */
+    @SuppressWarnings("unchecked")
+    public HarEntry next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (!inEntries && !seekEntries()) {
+            finished = true;
+            return null;
+        }
+        if (!json.hasNext()) {
+            json.endArray();
+            readTrailingLogFields();
+            finished = true;
+            return null;
+        }
+        Object entry = json.readValue();
+        if (!(entry instanceof Map)) {
+            throw new IOException("HAR entry is not an object at line " + json.line());
+        }
+        return new HarEntry((Map<String, Object>) entry);
+    }
+
+    /**
+     * Fields of the {@code log} object that precede the entries (version, creator, pages, ...),
+     * available once the first entry has been read
+     */
+    public Map<String, Object> logFields() {
+        return logFields;
+    }
+
+    /**
+     * Fields of the {@code log} object that follow the entries, available once {@link #next}
+     * has returned null
+     */
+    public Map<String, Object> trailingLogFields() {
+        return trailingLogFields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    /**
+     * Move to the first element of log.entries, keeping the log fields before it
+     */
+    private boolean seekEntries() throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals("log")) {
+                json.skipValue();
+                continue;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("entries")) {
+                    json.beginArray();
+                    inEntries = true;
+                    return true;
+                }
+                logFields.put(name, json.readValue());
+            }
+            json.endObject();
+        }
+        return false;
+    }
+
+    /**
+     * Keep the log fields after the entries array, then skip to the end of the archive
+     */
+    private void readTrailingLogFields() throws IOException {
+        while (json.hasNext()) {
+            trailingLogFields.put(json.nextName(), json.readValue());
+        }
+        json.endObject();
+        while (json.hasNext()) {
+            json.nextName();
+            json.skipValue();
+        }
+        json.endObject();
+    }
+}
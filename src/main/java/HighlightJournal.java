@@ -0,0 +1,230 @@
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.HighlightColor;
+
+/**
+ * Undo and redo history of bulk recolor operations. Each operation is a {@link Batch}: the
+ * annotations of every item it changed, with the color before and after as byte ordinals in
+ * parallel arrays, so an entry costs a reference and two bytes and no message is retained.
+ * All batches together hold at most {@link #MAX_ENTRIES} entries; the oldest batches are
+ * dropped first, and an operation that alone exceeds the limit cannot be undone.
+ */
+public class HighlightJournal {
+    static final int MAX_ENTRIES = 1 << 20;
+    private static final int MAX_BATCHES = 32;
+    private static final HighlightColor[] COLORS = HighlightColor.values();
+
+    // Guarded by this; most recent batch first
+    private final Deque<Batch> undo = new ArrayDeque<>();
+    private final Deque<Batch> redo = new ArrayDeque<>();
+    private long entries;
+
+    /**
+     * Start recording an operation. Record into the batch while it runs and {@link #commit} it at the end.
+     */
+    public Batch begin(String title) {
+        return new Batch(title);
+    }
+
+    /**
+     * Make a finished operation undoable. Starting a new operation discards what could be redone.
+     * Returns false if the operation was too large to keep.
+     */
+    public synchronized boolean commit(Batch batch) {
+        if (batch.overflowed) {
+            return false;
+        }
+        if (batch.size() == 0) {
+            return true;
+        }
+        batch.trim();
+        for (Batch discarded : redo) {
+            entries -= discarded.size();
+        }
+        redo.clear();
+        push(undo, batch);
+        return true;
+    }
+
+    /**
+     * The operation that {@link #undo} would revert, or null
+     */
+    public synchronized Batch peekUndo() {
+        return undo.peekFirst();
+    }
+
+    public synchronized Batch peekRedo() {
+        return redo.peekFirst();
+    }
+
+    /**
+     * Take the most recent operation off the undo history. Replay it with {@link Batch#revert}
+     * and hand it to {@link #reverted} when done, so it can be redone.
+     */
+    public synchronized Batch undo() {
+        Batch batch = undo.pollFirst();
+        if (batch != null) {
+            entries -= batch.size();
+        }
+        return batch;
+    }
+
+    public synchronized void reverted(Batch batch) {
+        push(redo, batch);
+    }
+
+    /**
+     * Take the most recently undone operation. Replay it with {@link Batch#reapply} and hand it to {@link #reapplied}.
+     */
+    public synchronized Batch redo() {
+        Batch batch = redo.pollFirst();
+        if (batch != null) {
+            entries -= batch.size();
+        }
+        return batch;
+    }
+
+    public synchronized void reapplied(Batch batch) {
+        push(undo, batch);
+    }
+
+    public synchronized void clear() {
+        undo.clear();
+        redo.clear();
+        entries = 0;
+    }
+
+    private void push(Deque<Batch> history, Batch batch) {
+        history.addFirst(batch);
+        entries += batch.size();
+        // Trim the oldest history first, redo before undo
+        while (entries > MAX_ENTRIES || undo.size() + redo.size() > MAX_BATCHES) {
+            Batch dropped = !redo.isEmpty() && redo.peekLast() != batch ? redo.pollLast() : undo.pollLast();
+            if (dropped == null) {
+                break;
+            }
+            entries -= dropped.size();
+        }
+    }
+
+    private static byte ordinal(HighlightColor color) {
+        return (byte) (color == null ? HighlightColor.NONE : color).ordinal();
+    }
+
+    /**
+     * The changes made by one operation
+     */
+    public static final class Batch {
+        private final String title;
+        // Guarded by this while recording
+        private Annotations[] items = new Annotations[64];
+        private byte[] before = new byte[64];
+        private byte[] after = new byte[64];
+        private int size;
+        private boolean overflowed;
+
+        private Batch(String title) {
+            this.title = title;
+        }
+
+        public String title() {
+            return title;
+        }
+
+        public synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Set an item's color and record the change. Returns true if the color changed.
+         */
+        public boolean recolor(Annotations annotations, HighlightColor color) {
+            byte previous = ordinal(annotations.highlightColor());
+            byte next = ordinal(color);
+            if (previous == next) {
+                return false;
+            }
+            annotations.setHighlightColor(color);
+            record(annotations, previous, next);
+            return true;
+        }
+
+        /**
+         * Indexes of the recorded changes, as items for a bulk job
+         */
+        public List<Integer> indexes() {
+            int count = size();
+            return new AbstractList<>() {
+                @Override
+                public Integer get(int index) {
+                    return index;
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+
+        /**
+         * Restore the color an item had before the operation, unless it was changed again since.
+         * Returns true if the item was restored.
+         */
+        public boolean revert(int index) {
+            return replay(index, after[index], before[index]);
+        }
+
+        /**
+         * Apply the operation's color to an item again, unless it was changed since the undo
+         */
+        public boolean reapply(int index) {
+            return replay(index, before[index], after[index]);
+        }
+
+        private boolean replay(int index, byte expected, byte target) {
+            Annotations annotations = items[index];
+            if (ordinal(annotations.highlightColor()) != expected) {
+                return false;
+            }
+            annotations.setHighlightColor(COLORS[target]);
+            return true;
+        }
+
+        private synchronized void record(Annotations annotations, byte previous, byte next) {
+            if (overflowed) {
+                return;
+            }
+            if (size == MAX_ENTRIES) {
+                // Too large to undo; drop what was recorded instead of holding it for nothing
+                overflowed = true;
+                items = new Annotations[0];
+                before = new byte[0];
+                after = new byte[0];
+                size = 0;
+                return;
+            }
+            if (size == items.length) {
+                int capacity = Math.min(MAX_ENTRIES, size * 2);
+                items = Arrays.copyOf(items, capacity);
+                before = Arrays.copyOf(before, capacity);
+                after = Arrays.copyOf(after, capacity);
+            }
+            items[size] = annotations;
+            before[size] = previous;
+            after[size] = next;
+            size++;
+        }
+
+        private synchronized void trim() {
+            items = Arrays.copyOf(items, size);
+            before = Arrays.copyOf(before, size);
+            after = Arrays.copyOf(after, size);
+        }
+    }
+}
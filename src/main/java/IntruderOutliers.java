@@ -0,0 +1,155 @@
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+/**
+ * Flags Intruder results that differ from the rest of their attack. Montoya does not say which
+ * attack a response belongs to, so results are grouped by the attack's base request,
+ * approximated by its endpoint ({@link EndpointTemplate}) and the names of its headers:
+ * payloads in the query string, the body, header values or ID-like path segments stay in one
+ * group, while attacks sent with different headers are kept apart. A group that has been quiet
+ * for {@link #ATTACK_GAP_NANOS} starts over, so a later attack on the same endpoint gets its
+ * own baseline. Each group keeps running statistics of the body length and of the word count
+ * within the body scan window, and a count per status code; a result is an outlier when its
+ * status code is rare in the group or its length or word count is beyond the anomaly
+ * threshold. Each result costs O(1) work, and no bodies are kept.
+ */
+public class IntruderOutliers {
+    /** Attacks tracked at once; the least recently active ones are forgotten first */
+    static final int MAX_GROUPS = 1024;
+    /** Pause after which results on the same endpoint are taken to be a new attack */
+    static final long ATTACK_GAP_NANOS = 60_000_000_000L;
+
+    // Word counts of near-identical pages differ by a few words at most
+    private static final double MIN_WORD_DEVIATION = 4;
+
+    private static final int NO_WORD_COUNT = -1;
+
+    private final LongLruCache<GroupStats> groups = new LongLruCache<>(MAX_GROUPS);
+
+    /**
+     * Add a result to its attack's statistics and report whether it stands out from the
+     * results before it. The first {@link AnomalyDetector#MIN_SAMPLES} results of an attack
+     * are never outliers.
+     *
+     * @param body the body to count words in, or null to judge the result without its word count
+     */
+    public boolean isOutlier(ColorRules rules, HttpRequest request, short statusCode, long bodySize,
+                             ByteArray body) {
+        long key = EndpointTemplate.hash(request.method(), request.url()) ^ headerNamesHash(request);
+        int length = (int) Math.min(Integer.MAX_VALUE, bodySize);
+        int words = NO_WORD_COUNT;
+        if (body != null && rules.bodyScanLimit() > 0) {
+            // One bulk copy of the scan window rather than a call per byte of the whole body
+            int window = Math.min(body.length(), rules.bodyScanLimit());
+            words = window == 0 ? 0 : wordCount(body.subArray(0, window).getBytes());
+        }
+        long now = System.nanoTime();
+        GroupStats stats;
+        synchronized (groups) {
+            stats = groups.get(key);
+            if (stats == null || now - stats.lastSeenNanos > ATTACK_GAP_NANOS) {
+                stats = new GroupStats();
+                groups.put(key, stats);
+            }
+            stats.lastSeenNanos = now;
+        }
+        synchronized (stats) {
+            boolean outlier = stats.isOutlier(rules.anomalyThreshold(), statusCode, length, words);
+            stats.add(statusCode, length, words);
+            return outlier;
+        }
+    }
+
+    public void clear() {
+        synchronized (groups) {
+            groups.clear();
+        }
+    }
+
+    /**
+     * Hash of the request's header names in order, which Intruder keeps fixed across an attack
+     */
+    private static long headerNamesHash(HttpRequest request) {
+        long hash = 0;
+        for (HttpHeader header : request.headers()) {
+            hash = hash * 31 + header.name().hashCode();
+        }
+        return hash * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Number of whitespace-separated words, as in Intruder's "Words" column
+     */
+    static int wordCount(byte[] body) {
+        int words = 0;
+        boolean inWord = false;
+        for (byte b : body) {
+            boolean space = b == ' ' || b == '\n' || b == '\r' || b == '\t';
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return words;
+    }
+
+    /**
+     * Statistics of one attack. Status codes are counted in a small table; codes beyond its
+     * size share one counter, which is enough to tell that they are rare.
+     */
+    static final class GroupStats {
+        private static final int STATUS_SLOTS = 8;
+
+        private final RunningStats lengths = new RunningStats();
+        private final RunningStats words = new RunningStats();
+        private final short[] statusCodes = new short[STATUS_SLOTS];
+        private final int[] statusCounts = new int[STATUS_SLOTS];
+        private int otherStatusCount;
+        // Guarded by the groups table's lock
+        private long lastSeenNanos;
+
+        boolean isOutlier(int threshold, short statusCode, int length, int wordCount) {
+            long count = lengths.count();
+            if (count < AnomalyDetector.MIN_SAMPLES) {
+                return false;
+            }
+            if (statusCount(statusCode) < count * AnomalyDetector.RARE_FRACTION) {
+                return true;
+            }
+            double lengthFloor = Math.max(AnomalyDetector.MIN_DEVIATION_BYTES,
+                    lengths.mean() * AnomalyDetector.MIN_DEVIATION_FRACTION);
+            if (lengths.isOutlier(length, threshold, lengthFloor)) {
+                return true;
+            }
+            return wordCount != NO_WORD_COUNT && words.count() >= AnomalyDetector.MIN_SAMPLES
+                    && words.isOutlier(wordCount, threshold, MIN_WORD_DEVIATION);
+        }
+
+        void add(short statusCode, int length, int wordCount) {
+            lengths.add(length);
+            if (wordCount != NO_WORD_COUNT) {
+                words.add(wordCount);
+            }
+            for (int i = 0; i < STATUS_SLOTS; i++) {
+                if (statusCounts[i] == 0) {
+                    statusCodes[i] = statusCode;
+                }
+                if (statusCodes[i] == statusCode) {
+                    statusCounts[i]++;
+                    return;
+                }
+            }
+            otherStatusCount++;
+        }
+
+        private int statusCount(short statusCode) {
+            for (int i = 0; i < STATUS_SLOTS && statusCounts[i] > 0; i++) {
+                if (statusCodes[i] == statusCode) {
+                    return statusCounts[i];
+                }
+            }
+            return otherStatusCount;
+        }
+    }
+}
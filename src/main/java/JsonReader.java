@@ -0,0 +1,444 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal streaming JSON reader: values are pulled one token at a time, so documents of any
+ * size (rules files, HAR archives) are read without building a tree. Malformed input is
+ * reported as an {@link IOException} with the line number.
+ */
+public final class JsonReader implements Closeable {
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    // What the reader expects next in the enclosing container
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    private Token peeked;
+    private String peekedText;
+    private boolean peekedBoolean;
+    private final StringBuilder scratch = new StringBuilder();
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Type of the next token, without consuming it
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[stackSize - 1];
+        switch (scope) {
+            case EMPTY_ARRAY -> stack[stackSize - 1] = NONEMPTY_ARRAY;
+            case NONEMPTY_ARRAY -> {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                stack[stackSize - 1] = DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                peekedText = readString();
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+            }
+            case EMPTY_DOCUMENT -> stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            default -> {
+                skipWhitespace();
+                if (position == limit && !fill()) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected data after the document");
+            }
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{' -> peeked = Token.BEGIN_OBJECT;
+            case '[' -> peeked = Token.BEGIN_ARRAY;
+            case ']' -> {
+                if (scope != EMPTY_ARRAY) {
+                    throw syntaxError("Unexpected ']'");
+                }
+                peeked = Token.END_ARRAY;
+            }
+            case '"' -> {
+                peekedText = readString();
+                peeked = Token.STRING;
+            }
+            case 't', 'f', 'n' -> {
+                String literal = readLiteral((char) c);
+                if (literal.equals("true") || literal.equals("false")) {
+                    peekedBoolean = literal.equals("true");
+                    peeked = Token.BOOLEAN;
+                } else if (literal.equals("null")) {
+                    peeked = Token.NULL;
+                } else {
+                    throw syntaxError("Unexpected literal '" + literal + "'");
+                }
+            }
+            default -> {
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw syntaxError("Unexpected character '" + (char) c + "'");
+                }
+                peekedText = readLiteral((char) c);
+                peeked = Token.NUMBER;
+            }
+        }
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return peekedText;
+    }
+
+    /**
+     * The next string, or a number as written in the document
+     */
+    public String nextString() throws IOException {
+        if (peek() == Token.NUMBER) {
+            peeked = null;
+            return peekedText;
+        }
+        expect(Token.STRING);
+        return peekedText;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    public long nextLong() throws IOException {
+        String text = nextString();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(text);
+            } catch (NumberFormatException notANumber) {
+                throw syntaxError("Expected a number but was '" + text + "'");
+            }
+        }
+    }
+
+    public int nextInt() throws IOException {
+        return (int) nextLong();
+    }
+
+    public double nextDouble() throws IOException {
+        String text = nextString();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was '" + text + "'");
+        }
+    }
+
+    /**
+     * Read the next value as a small tree: objects become insertion-ordered maps, arrays lists,
+     * numbers {@link Long} or {@link Double}, and null stays null. Only use this for values that
+     * are known to be of reasonable size.
+     */
+    public Object readValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> object = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    object.put(name, readValue());
+                }
+                endObject();
+                return object;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> array = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    array.add(readValue());
+                }
+                endArray();
+                return array;
+            }
+            case STRING -> {
+                return nextString();
+            }
+            case NUMBER -> {
+                String text = nextString();
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    try {
+                        return Double.parseDouble(text);
+                    } catch (NumberFormatException notANumber) {
+                        throw syntaxError("Invalid number '" + text + "'");
+                    }
+                }
+            }
+            case BOOLEAN -> {
+                return nextBoolean();
+            }
+            case NULL -> {
+                nextNull();
+                return null;
+            }
+            default -> throw syntaxError("Expected a value but was " + peek());
+        }
+    }
+
+    /**
+     * Skip the next value, including everything nested in it
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    depth++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    depth--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    depth--;
+                }
+                case END_DOCUMENT -> throw syntaxError("Unexpected end of document");
+                default -> peeked = null;
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Current line, for error messages
+     */
+    public int line() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void expect(Token token) throws IOException {
+        Token actual = peek();
+        if (actual != token) {
+            throw syntaxError("Expected " + token + " but was " + actual);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position++];
+                if (c == '"') {
+                    scratch.append(buffer, start, position - 1 - start);
+                    return scratch.toString();
+                } else if (c == '\\') {
+                    scratch.append(buffer, start, position - 1 - start);
+                    scratch.append(readEscape());
+                    start = position;
+                } else if (c == '\n') {
+                    line++;
+                }
+            }
+            scratch.append(buffer, start, position - start);
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'u' -> {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid \\u escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                return (char) value;
+            }
+            case 'b' -> {
+                return '\b';
+            }
+            case 'f' -> {
+                return '\f';
+            }
+            case 'n' -> {
+                return '\n';
+            }
+            case 'r' -> {
+                return '\r';
+            }
+            case 't' -> {
+                return '\t';
+            }
+            case '"', '\\', '/' -> {
+                return (char) c;
+            }
+            default -> throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Read an unquoted value (number or literal) starting with an already consumed character
+     */
+    private String readLiteral(char first) throws IOException {
+        scratch.setLength(0);
+        scratch.append(first);
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                break;
+            }
+            scratch.append(c);
+            position++;
+        }
+        return scratch.toString();
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        skipWhitespace();
+        if (position == limit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[position++];
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if (c == '\n') {
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != '\uFEFF') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int count = in.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(0, count);
+        return count > 0;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at line " + line);
+    }
+}
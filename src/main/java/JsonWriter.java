@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the value trees produced by {@link JsonReader#readValue()} back as compact JSON
+ */
+public final class JsonWriter {
+
+    private JsonWriter() {
+    }
+
+    public static void write(Object value, Appendable out) throws IOException {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String text) {
+            quote(text, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value.toString());
+        } else if (value instanceof Map<?, ?> object) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> member : object.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                quote(String.valueOf(member.getKey()), out);
+                out.append(':');
+                write(member.getValue(), out);
+                first = false;
+            }
+            out.append('}');
+        } else if (value instanceof List<?> array) {
+            out.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                write(array.get(i), out);
+            }
+            out.append(']');
+        } else {
+            quote(value.toString(), out);
+        }
+    }
+
+    public static void quote(String text, Appendable out) throws IOException {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * A string as a quoted JSON literal
+     */
+    public static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2);
+        try {
+            quote(text, quoted);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return quoted.toString();
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations in nanoseconds with logarithmic buckets: each power of two
+ * is split into eight linear sub-buckets, so any reported percentile is within 12.5% of the
+ * true value. Recording is one {@link LongAdder} increment, so many traffic threads can record
+ * at once without contending on a shared counter.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below this are counted exactly, one bucket each
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;
+    // Durations of 2^40 ns (about 18 minutes) and more share the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[bucket(value)].increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Copy of the bucket counts; percentiles computed from one copy are mutually consistent
+     */
+    public long[] counts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    /**
+     * The value at a percentile (0-100) of previously copied {@link #counts()}, reported as
+     * the upper bound of its bucket, or 0 if nothing was recorded
+     */
+    public static long percentile(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    public static long count(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+        int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
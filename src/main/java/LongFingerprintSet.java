@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity set of {@code long} fingerprints with first-in, first-out eviction.
+ * Keys live in an open-addressing table of primitives (no boxing), and a ring buffer
+ * remembers insertion order, so memory stays constant however many keys are offered.
+ * Not thread-safe.
+ */
+public final class LongFingerprintSet {
+    // Zero marks an empty slot, so a real zero key is stored under this substitute
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+    // Larger capacities would overflow the table size
+    static final int MAX_CAPACITY = 1 << 28;
+
+    private final long[] table;
+    private final long[] insertionOrder;
+    private final int mask;
+    private int size;
+    private int oldest;
+
+    public LongFingerprintSet(int capacity) {
+        int entries = Math.min(MAX_CAPACITY, Math.max(1, capacity));
+        int tableSize = Integer.highestOneBit(Math.max(2, entries) * 2 - 1) << 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.insertionOrder = new long[entries];
+    }
+
+    /**
+     * Add a key; returns true if it was not already present. When the set is full,
+     * the oldest key is evicted to make room.
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            key = ZERO_KEY;
+        }
+        int slot = slot(key);
+        while (table[slot] != 0) {
+            if (table[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == insertionOrder.length) {
+            remove(insertionOrder[oldest]);
+            oldest = (oldest + 1) % insertionOrder.length;
+            size--;
+            // Removal may have shifted entries, so find the insertion slot again
+            slot = slot(key);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        table[slot] = key;
+        insertionOrder[(oldest + size) % insertionOrder.length] = key;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            key = ZERO_KEY;
+        }
+        for (int slot = slot(key); table[slot] != 0; slot = (slot + 1) & mask) {
+            if (table[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        oldest = 0;
+    }
+
+    /**
+     * Remove a key using backward-shift deletion, which keeps probe chains intact without tombstones
+     */
+    private void remove(long key) {
+        int slot = slot(key);
+        while (table[slot] != key) {
+            if (table[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (table[next] != 0) {
+            int home = slot(table[next]);
+            // Move the entry back if its home slot is not between the hole and its current position
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity map from {@code long} keys to values with least-recently-used eviction.
+ * Keys sit in an open-addressing table of primitives and recency is an intrusive doubly
+ * linked list over slot indexes, so lookups, inserts and evictions are O(1) and allocate
+ * nothing after construction. Not thread-safe.
+ */
+public final class LongLruCache<V> {
+    private static final int NONE = -1;
+    // Larger capacities would overflow the table size
+    static final int MAX_CAPACITY = 1 << 28;
+
+    // Entry storage, indexed by entry number
+    private final long[] keys;
+    private final Object[] values;
+    private final int[] previous;
+    private final int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    // Hash table of entry numbers (+1, so 0 means empty)
+    private final int[] table;
+    private final int mask;
+
+    public LongLruCache(int capacity) {
+        int entries = Math.min(MAX_CAPACITY, Math.max(1, capacity));
+        this.keys = new long[entries];
+        this.values = new Object[entries];
+        this.previous = new int[entries];
+        this.next = new int[entries];
+        int tableSize = Integer.highestOneBit(entries * 2 - 1) << 1;
+        this.table = new int[Math.max(2, tableSize)];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Value for a key, marking it most recently used; null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int entry = find(key);
+        if (entry == NONE) {
+            return null;
+        }
+        moveToFront(entry);
+        return (V) values[entry];
+    }
+
+    /**
+     * Store a value, evicting the least recently used key if the cache is full.
+     * Returns the evicted value, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int entry = find(key);
+        if (entry != NONE) {
+            values[entry] = value;
+            moveToFront(entry);
+            return null;
+        }
+        V evicted = null;
+        if (size == keys.length) {
+            entry = tail;
+            evicted = (V) values[entry];
+            removeFromTable(entry);
+            unlink(entry);
+        } else {
+            entry = size++;
+        }
+        keys[entry] = key;
+        values[entry] = value;
+        insertIntoTable(entry);
+        linkFront(entry);
+        return evicted;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(values, null);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+    }
+
+    private int find(long key) {
+        for (int slot = slot(key); table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (keys[entry] == key) {
+                return entry;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertIntoTable(int entry) {
+        int slot = slot(keys[entry]);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * Backward-shift deletion, which keeps probe chains intact without tombstones
+     */
+    private void removeFromTable(int entry) {
+        int hole = slot(keys[entry]);
+        while (table[hole] != entry + 1) {
+            hole = (hole + 1) & mask;
+        }
+        int candidate = (hole + 1) & mask;
+        while (table[candidate] != 0) {
+            int home = slot(keys[table[candidate] - 1]);
+            if (((candidate - home) & mask) >= ((candidate - hole) & mask)) {
+                table[hole] = table[candidate];
+                hole = candidate;
+            }
+            candidate = (candidate + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void moveToFront(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkFront(entry);
+        }
+    }
+
+    private void linkFront(int entry) {
+        previous[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            previous[head] = entry;
+        }
+        head = entry;
+        if (tail == NONE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        int before = previous[entry];
+        int after = next[entry];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            head = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        } else {
+            tail = before;
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,247 @@
+import burp.api.montoya.core.ByteArray;
+
+/**
+ * Computes a structural fingerprint of a message: two messages get the same value when they
+ * have the same shape, regardless of the actual values. For JSON this is the set of keys and
+ * the type of each value, recursively; it is computed in one streaming pass without building
+ * a tree or allocating. Member order does not matter, and arrays are summarized by the range
+ * of their element shapes, so their length does not matter either. Text that is not JSON is
+ * reduced to its leading token and a length bucket. Instances keep scratch state and are not
+ * thread-safe.
+ */
+public final class MessageShape {
+    /** Characters of a text message that are looked at; the rest does not affect its shape */
+    public static final int MAX_SCAN_CHARS = 64 * 1024;
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_TOKEN_CHARS = 32;
+
+    private static final long TYPE_STRING = 0x51A7E5C3D2B1F4E7L;
+    private static final long TYPE_NUMBER = 0x2C8E1F6A9B3D7054L;
+    private static final long TYPE_BOOLEAN = 0x7B4D2E9F1C6A3850L;
+    private static final long TYPE_NULL = 0x1E5F8C3A7D2B9064L;
+    private static final long TYPE_DEEP = 0x6D3A9E1B5F7C2840L;
+    private static final long TYPE_OBJECT = 0x3F9C7A1E5D8B2046L;
+    private static final long TYPE_ARRAY = 0x48E2B6D1A9F37C05L;
+    private static final long TYPE_EMPTY_ARRAY = 0x5A1C8E3F7B2D9460L;
+    private static final long TYPE_TEXT = 0x0B7E3D9A5C1F6482L;
+    private static final long TYPE_BINARY = 0x79D5A3C1E8B2F046L;
+    private static final long EMPTY = 0x64B2F8D3A1C7E950L;
+
+    // One entry per open object or array: objects sum their member hashes (order-independent),
+    // arrays keep the smallest and largest element shape
+    private final boolean[] isObject = new boolean[MAX_DEPTH];
+    private final boolean[] expectKey = new boolean[MAX_DEPTH];
+    private final long[] pendingKey = new long[MAX_DEPTH];
+    private final long[] low = new long[MAX_DEPTH];
+    private final long[] high = new long[MAX_DEPTH];
+    private int depth;
+    private long result;
+
+    /**
+     * Fingerprint of a text message
+     */
+    public long ofText(CharSequence text) {
+        int length = Math.min(text.length(), MAX_SCAN_CHARS);
+        int start = skipWhitespace(text, 0, length);
+        if (start == length) {
+            return EMPTY;
+        }
+        char first = text.charAt(start);
+        if (first != '{' && first != '[') {
+            return ofPlainText(text, start, length);
+        }
+        return ofJson(text, start, length);
+    }
+
+    /**
+     * Fingerprint of a binary message: its first byte (usually a message type) and a length bucket
+     */
+    public long ofBinary(ByteArray data) {
+        int length = data.length();
+        if (length == 0) {
+            return EMPTY;
+        }
+        return mix(TYPE_BINARY ^ ((long) (data.getByte(0) & 0xFF) << 8) ^ lengthBucket(length));
+    }
+
+    private long ofJson(CharSequence text, int start, int length) {
+        depth = 0;
+        result = EMPTY;
+        // Containers nested deeper than MAX_DEPTH are skipped and count as one opaque value
+        int skipped = 0;
+        int i = start;
+        while (i < length) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '{', '[' -> {
+                    if (skipped > 0 || depth == MAX_DEPTH) {
+                        skipped++;
+                    } else {
+                        open(c == '{');
+                    }
+                    i++;
+                }
+                case '}', ']' -> {
+                    if (skipped > 0) {
+                        if (--skipped == 0) {
+                            emit(TYPE_DEEP);
+                        }
+                    } else if (depth > 0) {
+                        close();
+                        if (depth == 0) {
+                            return result;
+                        }
+                    }
+                    i++;
+                }
+                case '"' -> {
+                    int end = skipString(text, i + 1, length);
+                    if (skipped == 0) {
+                        int top = depth - 1;
+                        if (top >= 0 && isObject[top] && expectKey[top]) {
+                            pendingKey[top] = hash(text, i + 1, Math.max(i + 1, end - 1));
+                        } else {
+                            emit(TYPE_STRING);
+                        }
+                    }
+                    i = end;
+                }
+                case ':' -> {
+                    if (skipped == 0 && depth > 0) {
+                        expectKey[depth - 1] = false;
+                    }
+                    i++;
+                }
+                case ',' -> {
+                    if (skipped == 0 && depth > 0 && isObject[depth - 1]) {
+                        expectKey[depth - 1] = true;
+                    }
+                    i++;
+                }
+                case ' ', '\t', '\r', '\n' -> i++;
+                default -> {
+                    long type = c == 't' || c == 'f' ? TYPE_BOOLEAN : c == 'n' ? TYPE_NULL : TYPE_NUMBER;
+                    i = skipLiteral(text, i, length);
+                    if (skipped == 0) {
+                        emit(type);
+                    }
+                }
+            }
+        }
+        // Truncated message: fold whatever is still open
+        while (depth > 0) {
+            close();
+        }
+        return result;
+    }
+
+    private void open(boolean object) {
+        isObject[depth] = object;
+        expectKey[depth] = object;
+        pendingKey[depth] = 0;
+        low[depth] = object ? 0 : Long.MAX_VALUE;
+        high[depth] = Long.MIN_VALUE;
+        depth++;
+    }
+
+    private void close() {
+        depth--;
+        long shape;
+        if (isObject[depth]) {
+            shape = mix(low[depth] ^ TYPE_OBJECT);
+        } else if (high[depth] == Long.MIN_VALUE) {
+            shape = TYPE_EMPTY_ARRAY;
+        } else {
+            shape = mix(low[depth] * 31 + high[depth] ^ TYPE_ARRAY);
+        }
+        emit(shape);
+    }
+
+    private void emit(long valueShape) {
+        if (depth == 0) {
+            result = valueShape;
+            return;
+        }
+        int top = depth - 1;
+        if (isObject[top]) {
+            low[top] += mix(pendingKey[top] * 31 + valueShape);
+        } else {
+            low[top] = Math.min(low[top], valueShape);
+            high[top] = Math.max(high[top], valueShape);
+        }
+    }
+
+    private static long ofPlainText(CharSequence text, int start, int length) {
+        int end = start;
+        int tokenLimit = Math.min(length, start + MAX_TOKEN_CHARS);
+        while (end < tokenLimit && isTokenChar(text.charAt(end))) {
+            end++;
+        }
+        return mix(TYPE_TEXT ^ hash(text, start, end) ^ lengthBucket(text.length()));
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == '/';
+    }
+
+    /**
+     * Index just past the closing quote of a string whose content starts at {@code from}
+     */
+    private static int skipString(CharSequence text, int from, int length) {
+        int i = from;
+        while (i < length) {
+            char c = text.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static int skipLiteral(CharSequence text, int from, int length) {
+        int i = from;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                break;
+            }
+            i++;
+        }
+        return Math.max(i, from + 1);
+    }
+
+    private static int skipWhitespace(CharSequence text, int from, int length) {
+        int i = from;
+        while (i < length && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long lengthBucket(int length) {
+        return 32 - Integer.numberOfLeadingZeros(length);
+    }
+
+    // FNV-1a over the UTF-16 code units of a region
+    private static long hash(CharSequence text, int from, int to) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = from; i < to; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // Finalizer from MurmurHash3, spreads the bits so sums and min/max stay well distributed
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,6 +1,6 @@
-import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.core.ByteArray;
 import burp.api.montoya.core.HighlightColor;
-import burp.api.montoya.logging.Logging;
+import burp.api.montoya.core.ToolType;
 import burp.api.montoya.proxy.websocket.BinaryMessageReceivedAction;
 import burp.api.montoya.proxy.websocket.BinaryMessageToBeSentAction;
 import burp.api.montoya.proxy.websocket.InterceptedBinaryMessage;
@@ -10,25 +10,33 @@ import burp.api.montoya.proxy.websocket.ProxyWebSocketCreation;
 import burp.api.montoya.proxy.websocket.ProxyWebSocketCreationHandler;
 import burp.api.montoya.proxy.websocket.TextMessageReceivedAction;
 import burp.api.montoya.proxy.websocket.TextMessageToBeSentAction;
-import burp.api.montoya.ui.settings.SettingsPanelWithData;
 import burp.api.montoya.websocket.Direction;
 
 public class ProxyWebSocketColorizer implements ProxyWebSocketCreationHandler {
-    private final SettingsPanelWithData settings;
-    private final Logging logging;
+    private final ColorRulesProvider rules;
+    private final CrayonLog log;
+    private final CrayonMetrics.HandlerMetrics metrics;
+    private final ScopeCache scope;
 
-    public ProxyWebSocketColorizer(MontoyaApi api, SettingsPanelWithData settings) {
-        this.settings = settings;
-        this.logging = api.logging();
+    public ProxyWebSocketColorizer(ColorRulesProvider rules, CrayonLog log, CrayonMetrics metrics, ScopeCache scope) {
+        this.rules = rules;
+        this.log = log;
+        this.scope = scope;
+        this.metrics = metrics.handler(CrayonMetrics.Handler.PROXY_WEBSOCKET);
     }
 
     @Override
     public void handleWebSocketCreation(ProxyWebSocketCreation webSocketCreation) {
-        if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-            logging.logToOutput("Crayon: Proxy WebSocket created for: " + webSocketCreation.upgradeRequest().url());
+        String url = webSocketCreation.upgradeRequest().url();
+        if (!rules.current().toolEnabled(ToolType.PROXY)) {
+            log.debug(() -> "Crayon: Skipping Proxy WebSocket for: " + url);
+            return;
         }
+        log.info(() -> "Crayon: Proxy WebSocket created for: " + url);
 
         webSocketCreation.proxyWebSocket().registerProxyMessageHandler(new ProxyMessageHandler() {
+            private final FrameShapeTracker shapes = new FrameShapeTracker();
+
             @Override
             public TextMessageReceivedAction handleTextMessageReceived(InterceptedTextMessage interceptedTextMessage) {
                 applyHighlight(interceptedTextMessage);
@@ -54,43 +62,52 @@ public class ProxyWebSocketColorizer implements ProxyWebSocketCreationHandler {
             }
 
             private void applyHighlight(InterceptedTextMessage message) {
-                HighlightColor color = getColorForDirection(message.direction());
+                // Colors come from the shared snapshot: no settings lookups or parsing per frame
+                ColorRules snapshot = rules.current();
+                if (snapshot.inScopeOnly() && !scope.isInScope(url)) {
+                    return;
+                }
+                long start = System.nanoTime();
+                Direction direction = message.direction();
+                String payload = snapshot.hasWebsocketTextRules() || snapshot.websocketNewShapesOnly()
+                        ? message.payload() : null;
+                if (snapshot.websocketNewShapesOnly()
+                        && !shapes.isNewText(direction, payload, snapshot.websocketShapeMemory())) {
+                    metrics.record(start, null);
+                    return;
+                }
+                HighlightColor color = FrameClassifier.classifyText(snapshot, direction, payload);
                 if (color != null) {
                     message.annotations().setHighlightColor(color);
-                    if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                        logging.logToOutput("Crayon WebSocket: " + message.direction() + " -> " + color.name());
+                    if (snapshot.logEnabled()) {
+                        log.info(() -> "Crayon WebSocket: " + direction + " -> " + color.name());
                     }
                 }
+                metrics.record(start, color);
             }
 
             private void applyBinaryHighlight(InterceptedBinaryMessage message) {
-                HighlightColor color = getColorForDirection(message.direction());
-                if (color != null) {
-                    message.annotations().setHighlightColor(color);
-                    if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                        logging.logToOutput("Crayon WebSocket Binary: " + message.direction() + " -> " + color.name());
-                    }
+                ColorRules snapshot = rules.current();
+                if (snapshot.inScopeOnly() && !scope.isInScope(url)) {
+                    return;
                 }
-            }
-
-            private HighlightColor getColorForDirection(Direction direction) {
-                String colorName;
-                if (direction == Direction.SERVER_TO_CLIENT) {
-                    // Incoming (from server) - Green
-                    colorName = settings.getString(Extension.WEBSOCKET_INCOMING_COLOR_SETTING);
-                } else {
-                    // Outgoing (to server) - Yellow
-                    colorName = settings.getString(Extension.WEBSOCKET_OUTGOING_COLOR_SETTING);
+                long start = System.nanoTime();
+                Direction direction = message.direction();
+                ByteArray payload = snapshot.hasWebsocketBinaryRules() || snapshot.websocketNewShapesOnly()
+                        ? message.payload() : null;
+                if (snapshot.websocketNewShapesOnly()
+                        && !shapes.isNewBinary(direction, payload, snapshot.websocketShapeMemory())) {
+                    metrics.record(start, null);
+                    return;
                 }
-
-                if (colorName != null) {
-                    try {
-                        return HighlightColor.valueOf(colorName);
-                    } catch (IllegalArgumentException e) {
-                        logging.logToError("Invalid color name in settings: " + colorName);
+                HighlightColor color = FrameClassifier.classifyBinary(snapshot, direction, payload);
+                if (color != null) {
+                    message.annotations().setHighlightColor(color);
+                    if (snapshot.logEnabled()) {
+                        log.info(() -> "Crayon WebSocket Binary: " + direction + " -> " + color.name());
                     }
                 }
-                return null;
+                metrics.record(start, color);
             }
         });
     }
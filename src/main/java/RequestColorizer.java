@@ -1,21 +1,68 @@
-import burp.api.montoya.MontoyaApi;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.ByteArray;
 import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.core.ToolType;
 import burp.api.montoya.http.handler.HttpHandler;
 import burp.api.montoya.http.handler.HttpRequestToBeSent;
 import burp.api.montoya.http.handler.HttpResponseReceived;
 import burp.api.montoya.http.handler.RequestToBeSentAction;
 import burp.api.montoya.http.handler.ResponseReceivedAction;
-import burp.api.montoya.http.message.MimeType;
-import burp.api.montoya.logging.Logging;
-import burp.api.montoya.ui.settings.SettingsPanelWithData;
+import burp.api.montoya.http.message.requests.HttpRequest;
 
 public class RequestColorizer implements HttpHandler {
-    private final SettingsPanelWithData settings;
-    private final Logging logging;
+    /** Responses that may wait for a background classifier before new ones get the cheap rules */
+    static final int QUEUE_CAPACITY = 4096;
+
+    private final ColorRulesProvider rules;
+    private final CrayonLog log;
+    private final CrayonMetrics.HandlerMetrics metrics;
+    private final CrayonMetrics ruleMetrics;
+    private final AnomalyDetector anomalies;
+    private final FirstSeenEndpoints firstSeen;
+    private final IntruderOutliers intruderOutliers;
+    private final ScopeCache scope;
+    private final ThreadPoolExecutor classifier;
+
+    /**
+     * What the background classifiers need from a response, read before the handler returns;
+     * {@code window} is the copied start of the body, or null if nothing reads the body
+     */
+    private record CapturedResponse(short statusCode, String method, String url, String contentType,
+                                    String contentLength, int receivedLength, byte[] window,
+                                    Annotations annotations) {
+    }
 
-    public RequestColorizer(MontoyaApi api, SettingsPanelWithData settings) {
-        this.settings = settings;
-        this.logging = api.logging();
+    public RequestColorizer(ColorRulesProvider rules, CrayonLog log, CrayonMetrics metrics,
+                            AnomalyDetector anomalies, FirstSeenEndpoints firstSeen,
+                            IntruderOutliers intruderOutliers, ScopeCache scope) {
+        this.rules = rules;
+        this.log = log;
+        this.metrics = metrics.handler(CrayonMetrics.Handler.HTTP);
+        this.ruleMetrics = metrics;
+        this.anomalies = anomalies;
+        this.firstSeen = firstSeen;
+        this.intruderOutliers = intruderOutliers;
+        this.scope = scope;
+        // Threads are only started once background classification is used, and stop when idle
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.classifier = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "Crayon classifier " + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.classifier.allowCoreThreadTimeOut(true);
+    }
+
+    public void close() {
+        classifier.shutdownNow();
     }
 
     @Override
@@ -25,113 +72,179 @@ public class RequestColorizer implements HttpHandler {
 
     @Override
     public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived responseReceived) {
-        if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-            logging.logToOutput("Processing response for: " + responseReceived.initiatingRequest().url());
+        // Read the snapshot once so the whole message is classified against one consistent rule set
+        ColorRules snapshot = rules.current();
+        // Excluded tools (Scanner by default) leave before any header or body is touched
+        ToolType toolType = responseReceived.toolSource().toolType();
+        if (!snapshot.toolEnabled(toolType)) {
+            return ResponseReceivedAction.continueWith(responseReceived);
+        }
+        // Intruder outlier scoring is O(1) and runs on Intruder's own threads, never the Proxy's
+        boolean intruder = snapshot.intruderOutliers() && toolType == ToolType.INTRUDER;
+        if (!snapshot.backgroundClassification() || intruder) {
+            classify(snapshot, intruder, responseReceived);
+            return ResponseReceivedAction.continueWith(responseReceived);
         }
 
+        // Only raw values are read here; feature extraction, MIME sniffing and body rules run on the pool
+        HttpRequest request = responseReceived.initiatingRequest();
         short statusCode = responseReceived.statusCode();
-        HighlightColor color = null;
+        String method = request.method();
+        ByteArray body = responseReceived.body();
+        boolean sniff = snapshot.dependsOnMime(ResponseFeatures.statusClass(statusCode),
+                ResponseFeatures.methodId(method));
+        byte[] window = (snapshot.hasBodyRules() || sniff) && body.length() <= snapshot.headerOnlyAbove()
+                ? snapshot.copyScanWindow(body, sniff) : null;
+        CapturedResponse captured = new CapturedResponse(statusCode, method, request.url(),
+                responseReceived.headerValue("Content-Type"), responseReceived.headerValue("Content-Length"),
+                body.length(), window, responseReceived.annotations());
 
-        // Prioritize status codes over content types
-        if (statusCode >= 500) {
-            String colorName = settings.getString(Extension.STATUS_5XX_COLOR_SETTING);
-            if (colorName != null) {
-                try {
-                    color = HighlightColor.valueOf(colorName);
-                } catch (IllegalArgumentException e) {
-                    logging.logToError("Invalid color name in settings: " + colorName);
-                }
-            }
-        } else if (statusCode >= 400) {
-            String colorName = settings.getString(Extension.STATUS_4XX_COLOR_SETTING);
-            if (colorName != null) {
-                try {
-                    color = HighlightColor.valueOf(colorName);
-                } catch (IllegalArgumentException e) {
-                    logging.logToError("Invalid color name in settings: " + colorName);
-                }
-            }
-        } else if (statusCode >= 300) {
-            String colorName = settings.getString(Extension.STATUS_3XX_COLOR_SETTING);
-            if (colorName != null) {
+        long queuedAt = System.nanoTime();
+        ruleMetrics.queueEntered();
+        try {
+            classifier.execute(() -> {
+                ruleMetrics.queueLeft(queuedAt);
                 try {
-                    color = HighlightColor.valueOf(colorName);
-                } catch (IllegalArgumentException e) {
-                    logging.logToError("Invalid color name in settings: " + colorName);
+                    classifyCaptured(snapshot, captured);
+                } catch (Exception e) {
+                    log.debug(() -> "Crayon: Background classification failed: " + e);
                 }
-            }
-        } else if (statusCode >= 200) {
-            String method = responseReceived.initiatingRequest().method();
-            String colorName = null;
-
-            if ("GET".equalsIgnoreCase(method)) {
-                MimeType mimeType = responseReceived.inferredMimeType();
-                String contentType = responseReceived.headerValue("Content-Type");
-                if (contentType == null) {
-                    contentType = "";
-                }
-                
-                if (mimeType == MimeType.JSON || contentType.contains("json")) {
-                    colorName = settings.getString(Extension.STATUS_200_GET_JSON_COLOR_SETTING);
-                } else if (mimeType == MimeType.HTML || contentType.contains("html")) {
-                    colorName = settings.getString(Extension.STATUS_200_GET_HTML_COLOR_SETTING);
-                }
-                
-                // Fallback to general GET color if specific content type color is not set or not applicable
-                if (colorName == null) {
-                    colorName = settings.getString(Extension.STATUS_200_GET_COLOR_SETTING);
-                }
-            } else if ("POST".equalsIgnoreCase(method)) {
-                colorName = settings.getString(Extension.STATUS_200_POST_COLOR_SETTING);
-            } else {
-                colorName = settings.getString(Extension.STATUS_200_OTHER_COLOR_SETTING);
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            ruleMetrics.queueRejected();
+            classifyCheaply(snapshot, captured);
+        }
+        return ResponseReceivedAction.continueWith(responseReceived);
+    }
 
-            if (colorName != null) {
-                try {
-                    color = HighlightColor.valueOf(colorName);
-                } catch (IllegalArgumentException e) {
-                    logging.logToError("Invalid color name in settings: " + colorName);
-                }
-            }
+    private void classify(ColorRules snapshot, boolean intruder, HttpResponseReceived responseReceived) {
+        HttpRequest request = responseReceived.initiatingRequest();
+        if (snapshot.inScopeOnly() && !scope.isInScope(request.url())) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (snapshot.logEnabled()) {
+            log.info(() -> "Processing response for: " + request.url());
         }
 
-        // If no status code color was set, check content type
-        if (color == null) {
-            MimeType mimeType = responseReceived.inferredMimeType();
-            String colorName = null;
-            String contentType = responseReceived.headerValue("Content-Type");
-            if (contentType == null) {
-                contentType = "";
-            }
+        // Large or streamed bodies are never scanned or sniffed: only the status line and headers are used
+        long bodySize = snapshot.headerOnlyAbove() != Long.MAX_VALUE || snapshot.anomalyDetection() || intruder
+                ? ResponseFeatureExtractor.bodySize(responseReceived) : -1;
+        boolean headerOnly = bodySize > snapshot.headerOnlyAbove();
+        if (headerOnly) {
+            ruleMetrics.recordHeaderOnly();
+        }
 
-            if (mimeType == MimeType.JSON || contentType.contains("json")) {
-                colorName = settings.getString(Extension.JSON_COLOR_SETTING);
-            } else if (mimeType == MimeType.XML || contentType.contains("xml")) {
-                colorName = settings.getString(Extension.XML_COLOR_SETTING);
-            } else if (mimeType == MimeType.HTML || contentType.contains("html")) {
-                colorName = settings.getString(Extension.HTML_COLOR_SETTING);
-            } else if (contentType.startsWith("text/plain")) {
-                colorName = settings.getString(Extension.TEXT_COLOR_SETTING);
+        // In an Intruder attack nearly every result gets the same status color; only the odd ones out matter
+        if (intruder) {
+            HighlightColor color = intruderOutliers.isOutlier(snapshot, request, responseReceived.statusCode(),
+                    bodySize, headerOnly ? null : responseReceived.body())
+                    ? snapshot.intruderOutlierColor() : null;
+            if (color != null) {
+                responseReceived.annotations().setHighlightColor(color);
             }
+            metrics.record(start, color);
+            return;
+        }
 
-            if (colorName != null) {
-                try {
-                    color = HighlightColor.valueOf(colorName);
-                } catch (IllegalArgumentException e) {
-                    logging.logToError("Invalid color name in settings: " + colorName);
-                }
-            }
+        ResponseFeatures features = ResponseFeatureExtractor.extract(snapshot, request, responseReceived, headerOnly);
+        colorize(snapshot, request.method(), request.url(), features, bodySize, responseReceived.annotations(), start);
+    }
+
+    /**
+     * Classify a response from the values captured on the handler thread
+     */
+    private void classifyCaptured(ColorRules snapshot, CapturedResponse captured) {
+        if (snapshot.inScopeOnly() && !scope.isInScope(captured.url())) {
+            return;
         }
+        long start = System.nanoTime();
+        if (snapshot.logEnabled()) {
+            log.info(() -> "Processing response for: " + captured.url());
+        }
+        long bodySize = snapshot.headerOnlyAbove() != Long.MAX_VALUE || snapshot.anomalyDetection()
+                ? ResponseFeatureExtractor.bodySize(captured.contentLength(), captured.receivedLength()) : -1;
+        boolean headerOnly = bodySize > snapshot.headerOnlyAbove();
+        if (headerOnly) {
+            ruleMetrics.recordHeaderOnly();
+        }
+        ResponseFeatures features = ResponseFeatureExtractor.extract(snapshot, captured.statusCode(),
+                captured.method(), captured.url(), captured.contentType(), headerOnly ? null : captured.window());
+        colorize(snapshot, captured.method(), captured.url(), features, bodySize, captured.annotations(), start);
+    }
 
+    /**
+     * Status, method, Content-Type and URL rules only, applied on the spot when the queue is full.
+     * First-seen and anomaly modes need state the pool keeps, so with either on the response is
+     * left uncolored and counted as dropped rather than colored as if every endpoint were new.
+     */
+    private void classifyCheaply(ColorRules snapshot, CapturedResponse captured) {
+        if (snapshot.firstSeenOnly() || snapshot.anomalyDetection()) {
+            ruleMetrics.queueDropped();
+            return;
+        }
+        if (snapshot.inScopeOnly() && !scope.isInScope(captured.url())) {
+            return;
+        }
+        long start = System.nanoTime();
+        ResponseFeatures features = ResponseFeatureExtractor.extract(snapshot, captured.statusCode(),
+                captured.method(), captured.url(), captured.contentType(), null);
+        HighlightColor color = ResponseClassifier.classify(snapshot, features);
         if (color != null) {
-            responseReceived.annotations().setHighlightColor(color);
-            if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                logging.logToOutput(
-                        "Crayon Response: " + responseReceived.initiatingRequest().url() + " -> " + color.name());
+            recordRuleHit(snapshot, features);
+            captured.annotations().setHighlightColor(color);
+        }
+        metrics.record(start, color);
+    }
+
+    private void colorize(ColorRules snapshot, String method, String url, ResponseFeatures features, long bodySize,
+                          Annotations annotations, long start) {
+        // Every response feeds its endpoint's baseline, even when a rule decides the color
+        boolean anomalous = snapshot.anomalyDetection() && isAnomalous(snapshot, method, url, features, bodySize);
+        if (anomalous && snapshot.logEnabled()) {
+            log.info(() -> "Crayon: Anomalous response for " + EndpointTemplate.template(method, url));
+        }
+        // Known endpoints stay uncolored in first-seen mode; anomalies are still shown since they need a history
+        boolean known = snapshot.firstSeenOnly() && !firstSeen.add(snapshot, method, url);
+        HighlightColor color = known && !anomalous ? null : colorFor(snapshot, features, anomalous);
+        if (color != null) {
+            recordRuleHit(snapshot, features);
+            annotations.setHighlightColor(color);
+            if (snapshot.logEnabled()) {
+                log.info(() -> "Crayon Response: " + url + " -> " + color.name());
             }
         }
+        metrics.record(start, color);
+    }
 
-        return ResponseReceivedAction.continueWith(responseReceived);
+    /**
+     * Body and URL rules win over anomalies, which win over the status and content type colors
+     */
+    private static HighlightColor colorFor(ColorRules snapshot, ResponseFeatures features, boolean anomalous) {
+        if (anomalous && features.bodyRuleId() == BytePatternMatcher.NO_MATCH
+                && features.urlRuleId() == UrlRuleIndex.NO_MATCH) {
+            return snapshot.anomalyColor();
+        }
+        return ResponseClassifier.classify(snapshot, features);
+    }
+
+    /**
+     * Count a hit for the body or URL rule that decided an applied color; body rules take precedence
+     */
+    private void recordRuleHit(ColorRules snapshot, ResponseFeatures features) {
+        if (features.bodyRuleId() != BytePatternMatcher.NO_MATCH) {
+            ruleMetrics.recordBodyRule(snapshot, features.bodyRuleId());
+        } else if (features.urlRuleId() != UrlRuleIndex.NO_MATCH) {
+            ruleMetrics.recordUrlRule(snapshot, features.urlRuleId());
+        }
+    }
+
+    /**
+     * Feed the endpoint's baseline; the content type family comes from the already extracted features
+     */
+    private boolean isAnomalous(ColorRules snapshot, String method, String url, ResponseFeatures features,
+                                long bodySize) {
+        return anomalies.observe(snapshot, method, url, features.statusCode(),
+                features.contentTypeId(), (int) Math.min(Integer.MAX_VALUE, bodySize));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+import burp.api.montoya.core.HighlightColor;
+
+/**
+ * The single decision procedure shared by live traffic and the context menu actions.
+ * It only works on {@link ResponseFeatures}, so it can be driven without Burp message objects.
+ */
+public final class ResponseClassifier {
+
+    private ResponseClassifier() {
+    }
+
+    /**
+     * Pick the highlight color for a response, or null if no rule applies
+     */
+    public static HighlightColor classify(ColorRules rules, ResponseFeatures features) {
+        // User-defined body rules are the most specific signal, so they win over status and content type
+        if (features.bodyRuleId() != BytePatternMatcher.NO_MATCH) {
+            return rules.bodyRuleColor(features.bodyRuleId());
+        }
+        // Then per-target URL rules
+        if (features.urlRuleId() != UrlRuleIndex.NO_MATCH) {
+            return rules.urlRuleColor(features.urlRuleId());
+        }
+
+        int mimeFamily = mimeFamily(features.mimeId(), features.contentTypeId());
+        return rules.responseColor(features.statusClass(), features.methodId(), mimeFamily);
+    }
+
+    /**
+     * Merge the inferred and declared MIME families.
+     * JSON wins over everything else. A response with both HTML and XML signals is
+     * {@link ResponseFeatures#MIME_XHTML}, which the color table resolves like the original
+     * checks did: HTML for a 200 GET, XML for the content type colors.
+     * Plain text is only taken from the Content-Type header.
+     */
+    public static int mimeFamily(int mimeId, int contentTypeId) {
+        if (mimeId == ResponseFeatures.MIME_JSON || contentTypeId == ResponseFeatures.MIME_JSON) {
+            return ResponseFeatures.MIME_JSON;
+        }
+        boolean html = isHtml(mimeId) || isHtml(contentTypeId);
+        boolean xml = isXml(mimeId) || isXml(contentTypeId);
+        if (html && xml) {
+            return ResponseFeatures.MIME_XHTML;
+        } else if (html) {
+            return ResponseFeatures.MIME_HTML;
+        } else if (xml) {
+            return ResponseFeatures.MIME_XML;
+        } else if (contentTypeId == ResponseFeatures.MIME_TEXT) {
+            return ResponseFeatures.MIME_TEXT;
+        }
+        return ResponseFeatures.MIME_NONE;
+    }
+
+    private static boolean isHtml(int family) {
+        return family == ResponseFeatures.MIME_HTML || family == ResponseFeatures.MIME_XHTML;
+    }
+
+    private static boolean isXml(int family) {
+        return family == ResponseFeatures.MIME_XML || family == ResponseFeatures.MIME_XHTML;
+    }
+}
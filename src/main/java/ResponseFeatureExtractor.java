@@ -0,0 +1,211 @@
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+/**
+ * Builds {@link ResponseFeatures} from Montoya messages for the {@link ResponseClassifier}
+ */
+public final class ResponseFeatureExtractor {
+    /** Bytes of a body kept for {@link #sniffMimeId} when no body rule needs more */
+    public static final int SNIFF_WINDOW = 512;
+
+    // Openings that mark a body as HTML rather than XML
+    private static final String[] HTML_STARTS = {"!doctype html", "html", "head", "body", "script", "title",
+            "meta", "div", "!--"};
+
+    private ResponseFeatureExtractor() {
+    }
+
+    /**
+     * Extract the features of a response. The content type is only inspected when the
+     * rules say it can change the outcome for this status class and method, or when anomaly
+     * detection tracks it per endpoint, and Burp's
+     * inferred MIME type (which may sniff the body) is only consulted when the
+     * Content-Type header is missing or ambiguous.
+     */
+    public static ResponseFeatures extract(ColorRules rules, HttpRequest request, HttpResponse response) {
+        return extract(rules, request, response, false);
+    }
+
+    /**
+     * Extract the features of a response. With {@code headerOnly} the body is never read:
+     * body rules are skipped and the MIME family comes from the Content-Type header alone,
+     * since Burp's inferred MIME type may sniff the body.
+     */
+    public static ResponseFeatures extract(ColorRules rules, HttpRequest request, HttpResponse response,
+                                           boolean headerOnly) {
+        short statusCode = response.statusCode();
+        int methodId = ResponseFeatures.methodId(request.method());
+
+        int mimeId = ResponseFeatures.MIME_NONE;
+        int contentTypeId = ResponseFeatures.MIME_NONE;
+        boolean dependsOnMime = rules.dependsOnMime(ResponseFeatures.statusClass(statusCode), methodId);
+        if (dependsOnMime || rules.anomalyDetection()) {
+            int match = ContentTypeMatcher.match(response.headerValue("Content-Type"));
+            contentTypeId = ContentTypeMatcher.family(match);
+            if (dependsOnMime && ContentTypeMatcher.isAmbiguous(match) && !headerOnly) {
+                mimeId = mimeId(response.inferredMimeType());
+            }
+        }
+
+        // Body rules only look at the configured scan window, straight from the raw bytes
+        int bodyRuleId = BytePatternMatcher.NO_MATCH;
+        if (rules.hasBodyRules() && !headerOnly) {
+            bodyRuleId = rules.matchBody(response.body());
+        }
+
+        int urlRuleId = UrlRuleIndex.NO_MATCH;
+        if (rules.hasUrlRules()) {
+            urlRuleId = rules.matchUrl(request.url());
+        }
+        return new ResponseFeatures(statusCode, methodId, mimeId, contentTypeId, bodyRuleId, urlRuleId);
+    }
+
+    /**
+     * Extract the features of a response from values read off the message earlier, for
+     * classification after the message is released. {@code window} holds the first bytes of
+     * the body, or is null if the body must not be read; it stands in for Burp's inferred
+     * MIME type through {@link #sniffMimeId}.
+     */
+    public static ResponseFeatures extract(ColorRules rules, short statusCode, String method, String url,
+                                           String contentType, byte[] window) {
+        int methodId = ResponseFeatures.methodId(method);
+
+        int mimeId = ResponseFeatures.MIME_NONE;
+        int contentTypeId = ResponseFeatures.MIME_NONE;
+        boolean dependsOnMime = rules.dependsOnMime(ResponseFeatures.statusClass(statusCode), methodId);
+        if (dependsOnMime || rules.anomalyDetection()) {
+            int match = ContentTypeMatcher.match(contentType);
+            contentTypeId = ContentTypeMatcher.family(match);
+            if (dependsOnMime && ContentTypeMatcher.isAmbiguous(match) && window != null) {
+                mimeId = sniffMimeId(window);
+            }
+        }
+
+        int bodyRuleId = BytePatternMatcher.NO_MATCH;
+        if (rules.hasBodyRules() && window != null) {
+            bodyRuleId = rules.matchBody(window);
+        }
+
+        int urlRuleId = UrlRuleIndex.NO_MATCH;
+        if (rules.hasUrlRules()) {
+            urlRuleId = rules.matchUrl(url);
+        }
+        return new ResponseFeatures(statusCode, methodId, mimeId, contentTypeId, bodyRuleId, urlRuleId);
+    }
+
+    /**
+     * Extract the features of a HAR entry, for classification outside Burp. The MIME type
+     * recorded by the browser stands in for Burp's inferred MIME type.
+     */
+    public static ResponseFeatures extract(ColorRules rules, HarEntry entry) {
+        short statusCode = (short) entry.status();
+        int methodId = ResponseFeatures.methodId(entry.method());
+
+        int mimeId = ResponseFeatures.MIME_NONE;
+        int contentTypeId = ResponseFeatures.MIME_NONE;
+        if (rules.dependsOnMime(ResponseFeatures.statusClass(statusCode), methodId)) {
+            int match = ContentTypeMatcher.match(entry.responseHeader("Content-Type"));
+            contentTypeId = ContentTypeMatcher.family(match);
+            if (ContentTypeMatcher.isAmbiguous(match)) {
+                int recorded = ContentTypeMatcher.family(ContentTypeMatcher.match(entry.responseMimeType()));
+                // Like Burp's inference, the recorded type never yields plain text
+                mimeId = recorded == ResponseFeatures.MIME_TEXT ? ResponseFeatures.MIME_NONE : recorded;
+            }
+        }
+
+        int bodyRuleId = BytePatternMatcher.NO_MATCH;
+        if (rules.hasBodyRules()) {
+            bodyRuleId = rules.matchBody(entry.responseBody());
+        }
+
+        int urlRuleId = UrlRuleIndex.NO_MATCH;
+        if (rules.hasUrlRules()) {
+            urlRuleId = rules.matchUrl(entry.url());
+        }
+        return new ResponseFeatures(statusCode, methodId, mimeId, contentTypeId, bodyRuleId, urlRuleId);
+    }
+
+    /**
+     * Body size from the Content-Length header, or the length of the received body if the
+     * header is missing or invalid (e.g. chunked responses)
+     */
+    public static long bodySize(HttpResponse response) {
+        long size = contentLength(response.headerValue("Content-Length"));
+        return size >= 0 ? size : response.body().length();
+    }
+
+    /**
+     * Body size from a Content-Length header value read earlier, or {@code receivedLength} if it is missing or invalid
+     */
+    public static long bodySize(String contentLength, int receivedLength) {
+        long size = contentLength(contentLength);
+        return size >= 0 ? size : receivedLength;
+    }
+
+    private static long contentLength(String value) {
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // Fall back to the actual body
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * MIME family of a body judged from its first bytes, like Burp's inferred MIME type: JSON,
+     * HTML or XML markup, otherwise {@code MIME_NONE}
+     */
+    public static int sniffMimeId(byte[] window) {
+        int start = 0;
+        if (window.length >= 3 && (window[0] & 0xFF) == 0xEF && (window[1] & 0xFF) == 0xBB
+                && (window[2] & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        while (start < window.length && (window[start] == ' ' || window[start] == '\t'
+                || window[start] == '\r' || window[start] == '\n')) {
+            start++;
+        }
+        if (start == window.length) {
+            return ResponseFeatures.MIME_NONE;
+        }
+        byte first = window[start];
+        if (first == '{' || first == '[') {
+            return ResponseFeatures.MIME_JSON;
+        }
+        if (first != '<') {
+            return ResponseFeatures.MIME_NONE;
+        }
+        for (String tag : HTML_STARTS) {
+            if (startsWithIgnoreCase(window, start + 1, tag)) {
+                return ResponseFeatures.MIME_HTML;
+            }
+        }
+        return startsWithIgnoreCase(window, start + 1, "?xml") ? ResponseFeatures.MIME_XML : ResponseFeatures.MIME_NONE;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] data, int offset, String prefix) {
+        if (data.length - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) data[offset + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int mimeId(MimeType mimeType) {
+        if (mimeType == MimeType.JSON) {
+            return ResponseFeatures.MIME_JSON;
+        } else if (mimeType == MimeType.HTML) {
+            return ResponseFeatures.MIME_HTML;
+        } else if (mimeType == MimeType.XML) {
+            return ResponseFeatures.MIME_XML;
+        }
+        return ResponseFeatures.MIME_NONE;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Flat, Montoya-independent description of a response, holding only what the
+ * {@link ResponseClassifier} needs to pick a color.
+ *
+ * @param statusCode    HTTP status code
+ * @param methodId      one of the {@code METHOD_*} ids
+ * @param mimeId        MIME family inferred by Burp, one of the {@code MIME_*} ids
+ * @param contentTypeId MIME family declared by the Content-Type header, one of the {@code MIME_*} ids
+ * @param bodyRuleId    highest-priority body rule found in the body, or {@link BytePatternMatcher#NO_MATCH}
+ * @param urlRuleId     most specific URL rule for the request URL, or {@link UrlRuleIndex#NO_MATCH}
+ */
+public record ResponseFeatures(short statusCode, int methodId, int mimeId, int contentTypeId, int bodyRuleId,
+                               int urlRuleId) {
+    public static final int STATUS_OTHER = 0;
+    public static final int STATUS_2XX = 1;
+    public static final int STATUS_3XX = 2;
+    public static final int STATUS_4XX = 3;
+    public static final int STATUS_5XX = 4;
+    public static final int STATUS_CLASSES = 5;
+
+    public static final int METHOD_GET = 0;
+    public static final int METHOD_POST = 1;
+    public static final int METHOD_OTHER = 2;
+    public static final int METHODS = 3;
+
+    public static final int MIME_NONE = 0;
+    public static final int MIME_JSON = 1;
+    public static final int MIME_XML = 2;
+    public static final int MIME_HTML = 3;
+    public static final int MIME_TEXT = 4;
+    /** Both HTML and XML, e.g. XHTML: HTML for the 200 GET colors, XML for the content type colors */
+    public static final int MIME_XHTML = 5;
+    public static final int MIME_FAMILIES = 6;
+
+    public int statusClass() {
+        return statusClass(statusCode);
+    }
+
+    public static int statusClass(short statusCode) {
+        if (statusCode >= 500) {
+            return STATUS_5XX;
+        } else if (statusCode >= 400) {
+            return STATUS_4XX;
+        } else if (statusCode >= 300) {
+            return STATUS_3XX;
+        } else if (statusCode >= 200) {
+            return STATUS_2XX;
+        }
+        return STATUS_OTHER;
+    }
+
+    public static int methodId(String method) {
+        if ("GET".equalsIgnoreCase(method)) {
+            return METHOD_GET;
+        } else if ("POST".equalsIgnoreCase(method)) {
+            return METHOD_POST;
+        }
+        return METHOD_OTHER;
+    }
+}
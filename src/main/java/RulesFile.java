@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules loaded from an external JSON file, so rule packs can be shared and versioned.
+ * Color overrides replace the matching settings; rules are kept in file order and take
+ * priority over the rules typed into the settings panel. Example:
+ *
+ * <pre>
+ * {
+ *   "colors": { "5xx": "RED", "200-get-json": "GREEN" },
+ *   "rules": [
+ *     { "type": "body", "pattern": "\"error\":", "color": "RED" },
+ *     { "type": "url", "pattern": "*.example.com/admin/*", "color": "ORANGE" },
+ *     { "type": "websocket-text", "pattern": "^{\"type\":\"trade\"", "color": "BLUE" },
+ *     { "type": "websocket-binary", "pattern": "0x02", "color": "CYAN" }
+ *   ]
+ * }
+ * </pre>
+ */
+public record RulesFile(Map<String, String> colors, List<Rule> rules) {
+    public static final RulesFile EMPTY = new RulesFile(Map.of(), List.of());
+
+    public enum Kind {
+        BODY("body"),
+        URL("url"),
+        WEBSOCKET_TEXT("websocket-text"),
+        WEBSOCKET_BINARY("websocket-binary");
+
+        private final String key;
+
+        Kind(String key) {
+            this.key = key;
+        }
+
+        static Kind of(String key) throws IOException {
+            for (Kind kind : values()) {
+                if (kind.key.equals(key)) {
+                    return kind;
+                }
+            }
+            throw new IOException("Unknown rule type: " + key);
+        }
+    }
+
+    public record Rule(Kind kind, String pattern, String color) {
+    }
+
+    // Keys accepted in "colors", mapped to the setting they override
+    private static final Map<String, String> COLOR_KEYS = Map.ofEntries(
+            Map.entry("html", Extension.HTML_COLOR_SETTING),
+            Map.entry("json", Extension.JSON_COLOR_SETTING),
+            Map.entry("xml", Extension.XML_COLOR_SETTING),
+            Map.entry("text", Extension.TEXT_COLOR_SETTING),
+            Map.entry("5xx", Extension.STATUS_5XX_COLOR_SETTING),
+            Map.entry("4xx", Extension.STATUS_4XX_COLOR_SETTING),
+            Map.entry("3xx", Extension.STATUS_3XX_COLOR_SETTING),
+            Map.entry("200-get", Extension.STATUS_200_GET_COLOR_SETTING),
+            Map.entry("200-get-json", Extension.STATUS_200_GET_JSON_COLOR_SETTING),
+            Map.entry("200-get-html", Extension.STATUS_200_GET_HTML_COLOR_SETTING),
+            Map.entry("200-post", Extension.STATUS_200_POST_COLOR_SETTING),
+            Map.entry("200-other", Extension.STATUS_200_OTHER_COLOR_SETTING),
+            Map.entry("websocket-incoming", Extension.WEBSOCKET_INCOMING_COLOR_SETTING),
+            Map.entry("websocket-outgoing", Extension.WEBSOCKET_OUTGOING_COLOR_SETTING),
+            Map.entry("anomaly", Extension.ANOMALY_COLOR_SETTING),
+            Map.entry("intruder-outlier", Extension.INTRUDER_OUTLIER_COLOR_SETTING));
+
+    /**
+     * Rules of one kind, in file order
+     */
+    public List<Rule> rules(Kind kind) {
+        List<Rule> matching = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule.kind() == kind) {
+                matching.add(rule);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Read and validate a rules file. Nothing is returned unless the whole file is valid.
+     */
+    public static RulesFile load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(new JsonReader(reader));
+        }
+    }
+
+    static RulesFile read(JsonReader json) throws IOException {
+        Map<String, String> colors = new LinkedHashMap<>();
+        List<Rule> rules = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            switch (name) {
+                case "colors" -> {
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        String key = json.nextName();
+                        String setting = COLOR_KEYS.get(key);
+                        if (setting == null) {
+                            throw new IOException("Unknown color key '" + key + "' at line " + json.line());
+                        }
+                        colors.put(setting, json.nextString());
+                    }
+                    json.endObject();
+                }
+                case "rules" -> {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        rules.add(readRule(json));
+                    }
+                    json.endArray();
+                }
+                default -> throw new IOException("Unknown field '" + name + "' at line " + json.line());
+            }
+        }
+        json.endObject();
+        return new RulesFile(Collections.unmodifiableMap(colors), List.copyOf(rules));
+    }
+
+    private static Rule readRule(JsonReader json) throws IOException {
+        Kind kind = null;
+        String pattern = null;
+        String color = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            switch (name) {
+                case "type" -> kind = Kind.of(json.nextString());
+                case "pattern" -> pattern = json.nextString();
+                case "color" -> color = json.nextString();
+                default -> throw new IOException("Unknown rule field '" + name + "' at line " + json.line());
+            }
+        }
+        json.endObject();
+        if (kind == null || pattern == null || pattern.isEmpty() || color == null) {
+            throw new IOException("Rule needs a type, a pattern and a color at line " + json.line());
+        }
+        return new Rule(kind, pattern, color);
+    }
+}
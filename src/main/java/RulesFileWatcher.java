@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches one file and calls back when it is written or replaced. Editors often save in
+ * several steps (truncate, write, rename), so events are collected for a short quiet period
+ * and reported once.
+ */
+class RulesFileWatcher {
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final WatchService watchService;
+    private final Thread thread;
+
+    RulesFileWatcher(Path file, Runnable onChange) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path name = file.getFileName();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(() -> watch(name, onChange), "Crayon rules file watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private void watch(Path name, Runnable onChange) {
+        try {
+            while (true) {
+                boolean changed = drain(watchService.take(), name);
+                // Wait until the file has been quiet for a moment before reporting
+                WatchKey next;
+                while ((next = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(next, name);
+                }
+                if (changed) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed: stop watching
+        }
+    }
+
+    private static boolean drain(WatchKey key, Path name) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
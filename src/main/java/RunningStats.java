@@ -0,0 +1,40 @@
+/**
+ * Welford's online mean and variance: constant memory and numerically stable, however many
+ * values are added. Not thread-safe.
+ */
+public final class RunningStats {
+    private long count;
+    private double mean;
+    private double m2;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * Sample standard deviation, or 0 with fewer than two values
+     */
+    public double standardDeviation() {
+        return count < 2 ? 0 : Math.sqrt(m2 / (count - 1));
+    }
+
+    /**
+     * Whether a value is more than {@code threshold} standard deviations from the mean. The
+     * deviation is taken to be at least {@code floor}, so tiny natural variation (or none at
+     * all) does not make every small difference an outlier.
+     */
+    public boolean isOutlier(double value, double threshold, double floor) {
+        return Math.abs(value - mean) > threshold * Math.max(standardDeviation(), floor);
+    }
+}
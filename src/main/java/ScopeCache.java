@@ -0,0 +1,158 @@
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import burp.api.montoya.scope.Scope;
+
+/**
+ * Cached answers to {@link Scope#isInScope}, so "in-scope only" mode costs a hash and a table
+ * lookup per message instead of a call into Burp's scope rules.
+ * <p>
+ * How much of a URL a cached answer is keyed by comes from the scope definition
+ * ({@link ScopeRules}): scheme, host and port for origins whose scope rules are all host-wide,
+ * plus as many characters of the path as the longest URL prefix rule for that host, or the
+ * whole URL when an advanced rule matches files by pattern. URLs that share a key therefore
+ * always get the same answer from Burp. Both tables are bounded {@link LongLruCache}s, split
+ * by hash into {@link #STRIPES} independently locked segments so concurrent handler threads
+ * rarely wait on each other; they are emptied, and the definition re-read, when the project
+ * scope changes.
+ */
+public class ScopeCache {
+    static final int MAX_DECISIONS = 8192;
+    static final int MAX_ORIGINS = 2048;
+    static final int STRIPES = 16;
+
+    private final Scope scope;
+    private final Supplier<String> definition;
+    private final Segment[] segments = new Segment[STRIPES];
+    private volatile ScopeRules rules;
+    private volatile long generation;
+
+    /**
+     * @param definition the {@code target.scope} project options as JSON, e.g. from
+     *                   {@code BurpSuite.exportProjectOptionsAsJson}
+     */
+    public ScopeCache(Scope scope, Supplier<String> definition) {
+        this.scope = scope;
+        this.definition = definition;
+        this.rules = readRules();
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Whether an absolute URL is in the project scope
+     */
+    public boolean isInScope(String url) {
+        int hostStart = UrlParts.hostStart(url);
+        int pathStart = UrlParts.pathStart(url, hostStart);
+        long origin = originHash(url, hostStart, pathStart);
+
+        // Answers computed while the scope is being re-read are returned but not kept
+        long currentGeneration = generation;
+        Segment originSegment = segment(origin);
+        Integer keyLength;
+        synchronized (originSegment) {
+            keyLength = originSegment.keyLengths.get(origin);
+        }
+        if (keyLength == null) {
+            // First message for this origin since the scope was read: find which rules can apply to it
+            String host = url.substring(hostStart, UrlParts.hostEnd(url, hostStart)).toLowerCase(Locale.ROOT);
+            keyLength = rules.keyLength(host);
+            synchronized (originSegment) {
+                if (unchangedSince(currentGeneration)) {
+                    originSegment.keyLengths.put(origin, keyLength);
+                }
+            }
+        }
+
+        long key = keyLength == 0 ? origin : pathHash(origin, url, pathStart, keyLength);
+        Segment keySegment = segment(key);
+        synchronized (keySegment) {
+            Boolean cached = keySegment.decisions.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        boolean inScope = scope.isInScope(url);
+        synchronized (keySegment) {
+            if (unchangedSince(currentGeneration)) {
+                keySegment.decisions.put(key, inScope);
+            }
+        }
+        return inScope;
+    }
+
+    /**
+     * Forget all decisions and re-read the scope definition, e.g. because the scope changed
+     */
+    public void invalidate() {
+        ScopeRules current = readRules();
+        synchronized (segments) {
+            // The generation is odd while segments are cleared, so lookups that overlap the change keep nothing
+            generation++;
+            rules = current;
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.decisions.clear();
+                    segment.keyLengths.clear();
+                }
+            }
+            generation++;
+        }
+    }
+
+    /**
+     * Whether no scope change started or finished since {@code generation} was read
+     */
+    private boolean unchangedSince(long generation) {
+        return (generation & 1) == 0 && this.generation == generation;
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash ^ (hash >>> 32)) & (STRIPES - 1)];
+    }
+
+    private ScopeRules readRules() {
+        try {
+            return ScopeRules.parse(definition.get());
+        } catch (RuntimeException e) {
+            return ScopeRules.UNKNOWN;
+        }
+    }
+
+    private static long originHash(String url, int hostStart, int pathStart) {
+        long h = 0xCBF29CE484222325L;
+        int schemeEnd = url.indexOf("://");
+        for (int i = 0; i < schemeEnd; i++) {
+            h = (h ^ Character.toLowerCase(url.charAt(i))) * 0x100000001B3L;
+        }
+        h = (h ^ '/') * 0x100000001B3L;
+        for (int i = hostStart; i < pathStart; i++) {
+            h = (h ^ Character.toLowerCase(url.charAt(i))) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Hash of the origin and the first {@code length} characters after it
+     */
+    private static long pathHash(long origin, String url, int pathStart, int length) {
+        long h = origin;
+        int end = length >= url.length() - pathStart ? url.length() : pathStart + length;
+        for (int i = pathStart; i < end; i++) {
+            h = (h ^ url.charAt(i)) * 0x100000001B3L;
+        }
+        // Include where the key stops, so a short URL and a longer one with the same start differ
+        return (h ^ (end - pathStart)) * 0x100000001B3L;
+    }
+
+    /**
+     * One lock's share of the cache
+     */
+    private static final class Segment {
+        // Guarded by this segment
+        private final LongLruCache<Boolean> decisions = new LongLruCache<>(MAX_DECISIONS / STRIPES);
+        private final LongLruCache<Integer> keyLengths = new LongLruCache<>(MAX_ORIGINS / STRIPES);
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * What the project scope definition says about how much of a URL decides whether it is in
+ * scope. Read from the {@code target.scope} project options: a host-wide rule only looks at
+ * the origin, a URL prefix rule at most one character more of the path than its own path has,
+ * and an advanced rule with a file pattern may look at the whole path. Host matching is
+ * approximated generously (subdomains and unparseable hosts count as matching), so a rule is
+ * never overlooked; the scope decision itself is always made by Burp.
+ */
+final class ScopeRules {
+    /** The whole path and query decide, so answers cannot be shared between URLs */
+    static final int WHOLE_URL = Integer.MAX_VALUE;
+    /** Used when the definition cannot be read: no two URLs share an answer */
+    static final ScopeRules UNKNOWN = new ScopeRules(null);
+
+    // File patterns that accept every path
+    private static final List<String> ANY_FILE = List.of("", ".*", "^.*", ".*$", "^.*$");
+
+    private record Rule(String host, Pattern hostPattern, int pathLength) {
+        boolean appliesTo(String originHost) {
+            if (hostPattern != null) {
+                return hostPattern.matcher(originHost).find();
+            }
+            return host == null || originHost.equals(host) || originHost.endsWith("." + host);
+        }
+    }
+
+    private final List<Rule> rules;
+
+    private ScopeRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Number of characters after the origin that scope decisions for this host depend on:
+     * 0 if only the origin matters, {@link #WHOLE_URL} if any character may
+     */
+    int keyLength(String host) {
+        if (rules == null) {
+            return WHOLE_URL;
+        }
+        int length = 0;
+        for (Rule rule : rules) {
+            if (rule.pathLength() > length && rule.appliesTo(host)) {
+                length = rule.pathLength();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Parse the JSON exported for the {@code target.scope} project options; anything unexpected gives {@link #UNKNOWN}
+     */
+    static ScopeRules parse(String json) {
+        if (json == null) {
+            return UNKNOWN;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            Object target = reader.readValue() instanceof Map<?, ?> root ? root.get("target") : null;
+            Object scope = target instanceof Map<?, ?> options ? options.get("scope") : null;
+            if (!(scope instanceof Map<?, ?> definition) || !(definition.get("include") instanceof List<?> include)) {
+                return UNKNOWN;
+            }
+            List<Rule> rules = new ArrayList<>();
+            addRules(include, rules);
+            if (definition.get("exclude") instanceof List<?> exclude) {
+                addRules(exclude, rules);
+            }
+            return new ScopeRules(List.copyOf(rules));
+        } catch (IOException | RuntimeException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static void addRules(List<?> entries, List<Rule> rules) {
+        for (Object entry : entries) {
+            if (!(entry instanceof Map<?, ?> fields)) {
+                rules.add(new Rule(null, null, WHOLE_URL));
+            } else if (!Boolean.FALSE.equals(fields.get("enabled"))) {
+                rules.add(fields.get("prefix") instanceof String prefix ? prefixRule(prefix) : advancedRule(fields));
+            }
+        }
+    }
+
+    /**
+     * A simple-mode URL prefix: its host, and the length of whatever follows the authority.
+     * One more character is counted in case the prefix is matched as a folder ("/api" but not "/apix").
+     */
+    private static Rule prefixRule(String prefix) {
+        int hostStart = UrlParts.hostStart(prefix);
+        int hostEnd = UrlParts.hostEnd(prefix, hostStart);
+        String host = prefix.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+        int pathLength = prefix.length() - UrlParts.pathStart(prefix, hostStart);
+        if (pathLength > 0) {
+            pathLength++;
+        }
+        return new Rule(host.isEmpty() || host.indexOf('*') >= 0 ? null : host, null, pathLength);
+    }
+
+    /**
+     * An advanced-mode rule: host and file are regular expressions
+     */
+    private static Rule advancedRule(Map<?, ?> fields) {
+        Pattern hostPattern = null;
+        if (fields.get("host") instanceof String host && !host.isBlank()) {
+            try {
+                hostPattern = Pattern.compile(host, Pattern.CASE_INSENSITIVE);
+            } catch (PatternSyntaxException e) {
+                // Treated as matching every host
+            }
+        }
+        Object file = fields.get("file");
+        boolean anyFile = file == null || file instanceof String pattern && ANY_FILE.contains(pattern.strip());
+        return new Rule(null, hostPattern, anyFile ? 0 : WHOLE_URL);
+    }
+}
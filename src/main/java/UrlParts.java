@@ -0,0 +1,76 @@
+/**
+ * Index-based helpers for locating the host and path of an absolute URL without creating substrings
+ */
+public final class UrlParts {
+
+    private UrlParts() {
+    }
+
+    /**
+     * Start of the host, after the scheme and any user info
+     */
+    public static int hostStart(String url) {
+        int schemeEnd = url.indexOf("://");
+        int start = schemeEnd < 0 ? 0 : schemeEnd + 3;
+        int authorityEnd = authorityEnd(url, start);
+        int at = url.lastIndexOf('@', authorityEnd - 1);
+        return at >= start ? at + 1 : start;
+    }
+
+    /**
+     * End of the host, excluding any port
+     */
+    public static int hostEnd(String url, int hostStart) {
+        int end = authorityEnd(url, hostStart);
+        if (hostStart < end && url.charAt(hostStart) == '[') {
+            // IPv6 literal: the port separator comes after the closing bracket
+            int bracket = url.indexOf(']', hostStart);
+            return bracket < 0 || bracket >= end ? end : bracket + 1;
+        }
+        int colon = url.indexOf(':', hostStart);
+        return colon >= 0 && colon < end ? colon : end;
+    }
+
+    /**
+     * Start of the path (its leading '/'), or the end of the URL if there is no path
+     */
+    public static int pathStart(String url, int hostStart) {
+        return authorityEnd(url, hostStart);
+    }
+
+    /**
+     * End of the path, before any query or fragment
+     */
+    public static int pathEnd(String url, int pathStart) {
+        for (int i = pathStart; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    /**
+     * The URL up to and including the last '/' of its path, as used for site map folder operations
+     */
+    public static String folderPrefix(String url) {
+        int queryStart = url.indexOf('?');
+        String pathPart = queryStart > 0 ? url.substring(0, queryStart) : url;
+        int lastSlash = pathPart.lastIndexOf('/');
+        if (lastSlash > 0) {
+            return pathPart.substring(0, lastSlash + 1);
+        }
+        return pathPart;
+    }
+
+    private static int authorityEnd(String url, int from) {
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+}
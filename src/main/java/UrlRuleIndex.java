@@ -0,0 +1,224 @@
+import java.util.List;
+
+/**
+ * Index of host/path rules such as {@code *.internal.corp/admin/*}. Hosts are stored in a trie of
+ * reversed labels and paths in a trie of segments, so a lookup walks the URL once and its cost
+ * depends on the URL's depth rather than on the number of rules.
+ *
+ * <p>Pattern syntax: a leading {@code *} host label matches one or more subdomains; a {@code *}
+ * path segment matches exactly one segment, except at the end where it matches any remainder.
+ * A pattern without a path matches every path on the host. When several rules match, the most
+ * specific host wins, then the most specific path, then the earliest rule.
+ */
+public final class UrlRuleIndex {
+    public static final int NO_MATCH = -1;
+
+    // Candidates are packed into a long so that a larger value is a better match:
+    // host specificity, then path specificity, then the inverted rule index
+    private static final int SCORE_BITS = 21;
+    private static final long RULE_MASK = (1L << SCORE_BITS) - 1;
+
+    private final Node root = new Node();
+    private final boolean empty;
+
+    public UrlRuleIndex(List<String> patterns) {
+        for (int i = 0; i < patterns.size(); i++) {
+            add(patterns.get(i), i);
+        }
+        this.empty = patterns.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Find the best rule for an absolute URL, or {@link #NO_MATCH}
+     */
+    public int match(String url) {
+        if (empty || url == null) {
+            return NO_MATCH;
+        }
+        int hostStart = UrlParts.hostStart(url);
+        int hostEnd = UrlParts.hostEnd(url, hostStart);
+        int pathStart = UrlParts.pathStart(url, hostStart);
+        int pathEnd = UrlParts.pathEnd(url, pathStart);
+
+        long best = matchHost(root, url, hostStart, hostEnd, 0, pathStart, pathEnd);
+        return best < 0 ? NO_MATCH : (int) (RULE_MASK - (best & RULE_MASK));
+    }
+
+    private void add(String pattern, int rule) {
+        String trimmed = pattern.strip();
+        int slash = trimmed.indexOf('/');
+        String host = slash < 0 ? trimmed : trimmed.substring(0, slash);
+        String path = slash < 0 ? "" : trimmed.substring(slash);
+
+        Node node = root;
+        String[] labels = host.split("\\.");
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (i == 0 && labels[i].equals("*")) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else {
+                node = node.child(labels[i]);
+            }
+        }
+        if (node.paths == null) {
+            node.paths = new Node();
+        }
+
+        Node pathNode = node.paths;
+        String[] segments = path.isEmpty() ? new String[]{"*"} : path.substring(1).split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (last && segment.equals("*")) {
+                pathNode.prefixRule = pathNode.prefixRule == NO_MATCH ? rule : pathNode.prefixRule;
+                return;
+            }
+            if (segment.equals("*")) {
+                if (pathNode.wildcard == null) {
+                    pathNode.wildcard = new Node();
+                }
+                pathNode = pathNode.wildcard;
+            } else {
+                pathNode = pathNode.child(segment);
+            }
+        }
+        pathNode.exactRule = pathNode.exactRule == NO_MATCH ? rule : pathNode.exactRule;
+    }
+
+    /**
+     * Walk the host labels from right to left; {@code end} is the exclusive end of the labels still to match
+     */
+    private static long matchHost(Node node, String url, int hostStart, int end, int depth,
+                                  int pathStart, int pathEnd) {
+        if (end <= hostStart) {
+            return node.paths == null ? -1 : matchPath(node.paths, url, pathStart + 1, pathEnd, depth * 2 + 1, 0);
+        }
+        long best = -1;
+        // A wildcard label stands for all remaining (one or more) labels
+        if (node.wildcard != null && node.wildcard.paths != null) {
+            best = matchPath(node.wildcard.paths, url, pathStart + 1, pathEnd, depth * 2, 0);
+        }
+        int dot = url.lastIndexOf('.', end - 1);
+        int labelStart = dot < hostStart ? hostStart : dot + 1;
+        Node child = node.find(url, labelStart, end);
+        if (child != null) {
+            best = Math.max(best, matchHost(child, url, hostStart, labelStart - 1, depth + 1, pathStart, pathEnd));
+        }
+        return best;
+    }
+
+    /**
+     * Walk the path segments from left to right starting at {@code from} (just after a '/')
+     */
+    private static long matchPath(Node node, String url, int from, int pathEnd, int hostScore, int depth) {
+        long best = -1;
+        if (node.prefixRule != NO_MATCH) {
+            best = score(node.prefixRule, hostScore, depth * 2);
+        }
+        if (from > pathEnd) {
+            // Path fully consumed
+            if (node.exactRule != NO_MATCH) {
+                best = Math.max(best, score(node.exactRule, hostScore, depth * 2 + 1));
+            }
+            return best;
+        }
+        int slash = url.indexOf('/', from);
+        int segmentEnd = slash < 0 || slash > pathEnd ? pathEnd : slash;
+        Node child = node.find(url, from, segmentEnd);
+        if (child != null) {
+            best = Math.max(best, matchPath(child, url, segmentEnd + 1, pathEnd, hostScore, depth + 1));
+        }
+        if (node.wildcard != null) {
+            best = Math.max(best, matchPath(node.wildcard, url, segmentEnd + 1, pathEnd, hostScore, depth + 1));
+        }
+        return best;
+    }
+
+    private static long score(int rule, int hostScore, int pathScore) {
+        return ((long) hostScore << (2 * SCORE_BITS)) | ((long) pathScore << SCORE_BITS) | (RULE_MASK - rule);
+    }
+
+    /**
+     * Trie node with an open-addressing table of children keyed by label or segment.
+     * Lookups hash and compare regions of the URL in place, ignoring ASCII case.
+     */
+    private static final class Node {
+        String[] keys = new String[4];
+        Node[] children = new Node[4];
+        int size;
+        Node wildcard;
+        Node paths;
+        int exactRule = NO_MATCH;
+        int prefixRule = NO_MATCH;
+
+        Node child(String key) {
+            Node existing = find(key, 0, key.length());
+            if (existing != null) {
+                return existing;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            Node created = new Node();
+            insert(key, created);
+            return created;
+        }
+
+        Node find(String source, int from, int to) {
+            if (size == 0) {
+                return null;
+            }
+            int mask = keys.length - 1;
+            int length = to - from;
+            for (int slot = hash(source, from, to) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && source.regionMatches(true, from, key, 0, length)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+
+        private void insert(String key, Node child) {
+            int mask = keys.length - 1;
+            int slot = hash(key, 0, key.length()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            children[slot] = child;
+            size++;
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            Node[] oldChildren = children;
+            keys = new String[oldKeys.length * 2];
+            children = new Node[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    insert(oldKeys[i], oldChildren[i]);
+                }
+            }
+        }
+
+        private static int hash(String source, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                char c = source.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                h = 31 * h + c;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -1,6 +1,6 @@
-import burp.api.montoya.MontoyaApi;
-import burp.api.montoya.logging.Logging;
-import burp.api.montoya.ui.settings.SettingsPanelWithData;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.core.ToolType;
 import burp.api.montoya.websocket.BinaryMessage;
 import burp.api.montoya.websocket.BinaryMessageAction;
 import burp.api.montoya.websocket.Direction;
@@ -10,46 +10,84 @@ import burp.api.montoya.websocket.TextMessageAction;
 import burp.api.montoya.websocket.WebSocketCreated;
 import burp.api.montoya.websocket.WebSocketCreatedHandler;
 
+/**
+ * Classifies WebSocket frames from tools other than the Proxy (Repeater, extensions, ...).
+ * Whether a socket is handled is decided once when it is created, so sockets from disabled
+ * tools never get a message handler. These frames carry no annotations in the Montoya API,
+ * so the result is counted per color in {@link CrayonMetrics} and reported in the debug log
+ * rather than highlighted.
+ */
 public class WebSocketColorizer implements WebSocketCreatedHandler {
-    private final SettingsPanelWithData settings;
-    private final Logging logging;
+    private final ColorRulesProvider rules;
+    private final CrayonLog log;
+    private final CrayonMetrics.HandlerMetrics metrics;
+    private final ScopeCache scope;
 
-    public WebSocketColorizer(MontoyaApi api, SettingsPanelWithData settings) {
-        this.settings = settings;
-        this.logging = api.logging();
+    public WebSocketColorizer(ColorRulesProvider rules, CrayonLog log, CrayonMetrics metrics, ScopeCache scope) {
+        this.rules = rules;
+        this.log = log;
+        this.scope = scope;
+        this.metrics = metrics.handler(CrayonMetrics.Handler.WEBSOCKET);
     }
 
     @Override
     public void handleWebSocketCreated(WebSocketCreated webSocketCreated) {
-        if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-            logging.logToOutput("Crayon: WebSocket created from " + 
-                webSocketCreated.toolSource().toolType() + " for: " + 
-                webSocketCreated.upgradeRequest().url());
+        ToolType toolType = webSocketCreated.toolSource().toolType();
+        String url = webSocketCreated.upgradeRequest().url();
+
+        // Proxy sockets are highlighted by ProxyWebSocketColorizer; disabled tools cost nothing per frame
+        if (toolType == ToolType.PROXY || !rules.current().toolEnabled(toolType)) {
+            log.debug(() -> "Crayon: Skipping WebSocket from " + toolType + " for: " + url);
+            return;
         }
+        log.info(() -> "Crayon: WebSocket created from " + toolType + " for: " + url);
 
         webSocketCreated.webSocket().registerMessageHandler(new MessageHandler() {
+            private final FrameShapeTracker shapes = new FrameShapeTracker();
+
             @Override
             public TextMessageAction handleTextMessage(TextMessage textMessage) {
-                logMessage(textMessage.direction(), "text");
+                ColorRules snapshot = rules.current();
+                if (snapshot.inScopeOnly() && !scope.isInScope(url)) {
+                    return TextMessageAction.continueWith(textMessage);
+                }
+                long start = System.nanoTime();
+                String payload = snapshot.hasWebsocketTextRules() || snapshot.websocketNewShapesOnly()
+                        ? textMessage.payload() : null;
+                if (snapshot.websocketNewShapesOnly()
+                        && !shapes.isNewText(textMessage.direction(), payload, snapshot.websocketShapeMemory())) {
+                    metrics.record(start, null);
+                    return TextMessageAction.continueWith(textMessage);
+                }
+                record(start, snapshot, textMessage.direction(), "text",
+                        FrameClassifier.classifyText(snapshot, textMessage.direction(), payload));
                 return TextMessageAction.continueWith(textMessage);
             }
 
             @Override
             public BinaryMessageAction handleBinaryMessage(BinaryMessage binaryMessage) {
-                logMessage(binaryMessage.direction(), "binary");
+                ColorRules snapshot = rules.current();
+                if (snapshot.inScopeOnly() && !scope.isInScope(url)) {
+                    return BinaryMessageAction.continueWith(binaryMessage);
+                }
+                long start = System.nanoTime();
+                ByteArray payload = snapshot.hasWebsocketBinaryRules() || snapshot.websocketNewShapesOnly()
+                        ? binaryMessage.payload() : null;
+                if (snapshot.websocketNewShapesOnly()
+                        && !shapes.isNewBinary(binaryMessage.direction(), payload, snapshot.websocketShapeMemory())) {
+                    metrics.record(start, null);
+                    return BinaryMessageAction.continueWith(binaryMessage);
+                }
+                record(start, snapshot, binaryMessage.direction(), "binary",
+                        FrameClassifier.classifyBinary(snapshot, binaryMessage.direction(), payload));
                 return BinaryMessageAction.continueWith(binaryMessage);
             }
 
-            private void logMessage(Direction direction, String type) {
-                if (settings.getBoolean(Extension.LOG_ENABLED_SETTING)) {
-                    String colorName;
-                    if (direction == Direction.SERVER_TO_CLIENT) {
-                        colorName = settings.getString(Extension.WEBSOCKET_INCOMING_COLOR_SETTING);
-                    } else {
-                        colorName = settings.getString(Extension.WEBSOCKET_OUTGOING_COLOR_SETTING);
-                    }
-                    logging.logToOutput("Crayon WebSocket (" + type + "): " + direction + 
-                        " -> would highlight with " + colorName);
+            private void record(long start, ColorRules snapshot, Direction direction, String type,
+                                HighlightColor color) {
+                metrics.record(start, color);
+                if (color != null && snapshot.debugMode()) {
+                    log.debug(() -> "Crayon WebSocket (" + toolType + ", " + type + "): " + direction + " -> " + color.name());
                 }
             }
         });